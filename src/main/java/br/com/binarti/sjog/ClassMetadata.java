@@ -0,0 +1,173 @@
+package br.com.binarti.sjog;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reflective metadata of a class: getters, a hashed table of its properties and the properties sorted by name.<br/>
+ * Metadata is stored per class through a <code>ClassValue</code>, so it is keyed by the class itself (not by
+ * the class name) and is released together with the class loader. The metadata is populated once, on first use,
+ * and published safely to all threads.
+ *
+ * @author francofabio
+ *
+ */
+final class ClassMetadata {
+
+	private static final Pattern GETTER_METHOD_PATTERN = Pattern.compile("^get[\\p{Upper}]{1}.*$|^is[\\p{Upper}]{1}.*$");
+
+	private static final ClassValue<ClassMetadata> METADATA = new ClassValue<ClassMetadata>() {
+		@Override
+		protected ClassMetadata computeValue(Class<?> type) {
+			return new ClassMetadata(type);
+		}
+	};
+
+	private final Class<?> cls;
+	private volatile Properties properties;
+
+	private ClassMetadata(Class<?> cls) {
+		this.cls = cls;
+	}
+
+	/**
+	 * Get metadata of a class
+	 * @param cls The class
+	 * @return Metadata of the class
+	 */
+	static ClassMetadata of(Class<?> cls) {
+		return METADATA.get(cls);
+	}
+
+	/**
+	 * All getters of the class, without overridden methods
+	 */
+	List<Method> getters() {
+		return load().getters;
+	}
+
+	/**
+	 * All properties of the class, in the same order of {@link #getters()}
+	 */
+	List<Property> properties() {
+		return load().properties;
+	}
+
+	/**
+	 * All properties of the class sorted by name. The order of {@link #getters()} is not specified by the JVM,
+	 * so this order is used when a stable order is required.
+	 */
+	List<Property> sortedProperties() {
+		return load().sortedProperties;
+	}
+
+	/**
+	 * Find a property by name with a single hash lookup
+	 * @param name Property name
+	 * @return The property or <code>null</code> if the class has no getter for it
+	 */
+	Property property(String name) {
+		return load().byName.get(name);
+	}
+
+	private Properties load() {
+		Properties result = this.properties;
+		if (result == null) {
+			synchronized (this) {
+				result = properties;
+				if (result == null) {
+					result = new Properties(discoverGetters());
+					properties = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private List<Method> discoverGetters() {
+		List<Method> getters = new ArrayList<>();
+		for (Method method : cls.getMethods()) {
+			String name = method.getName();
+			if (name.equals("getClass") || Modifier.isStatic(method.getModifiers()) || method.getParameterCount() > 0) continue;
+			Matcher matcher = GETTER_METHOD_PATTERN.matcher(name);
+			if (matcher.find()) {
+				getters.add(method);
+			}
+		}
+		removeOverridden(getters);
+		return getters;
+	}
+
+	private static int findMethod(List<Method> methods, Method method, int exceptIndex) {
+		for (int i = 0; i < methods.size(); i++) {
+			Method m = methods.get(i);
+			if (m.getName().equals(method.getName()) && Arrays.equals(m.getParameterTypes(), method.getParameterTypes())) {
+				if (i != exceptIndex) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isOverridden(Method m1, Method m2) {
+		Class<?> declaredClassM1 = m1.getDeclaringClass();
+		Class<?> declaredClassM2 = m2.getDeclaringClass();
+		return declaredClassM2.isAssignableFrom(declaredClassM1);
+	}
+
+	private static void removeOverridden(List<Method> methods) {
+		List<Integer> indexToRemove = new ArrayList<>();
+		List<Method> clone = new ArrayList<>(methods);
+		for (int i = 0; i < clone.size(); i++) {
+			if (indexToRemove.contains(i)) continue;
+			Method m = clone.get(i);
+			int indexFound = findMethod(clone, m, i);
+			if (indexFound > -1) {
+				if (isOverridden(m, clone.get(indexFound))) {
+					indexToRemove.add(indexFound);
+				}
+			}
+		}
+		if (!indexToRemove.isEmpty()) {
+			for (Integer index : indexToRemove) {
+				methods.remove(index.intValue());
+			}
+		}
+	}
+
+	/**
+	 * Immutable snapshot of the properties of the class
+	 */
+	private static final class Properties {
+		private final List<Method> getters;
+		private final List<Property> properties;
+		private final List<Property> sortedProperties;
+		private final Map<String, Property> byName;
+
+		Properties(List<Method> getters) {
+			List<Property> properties = new ArrayList<>(getters.size());
+			Map<String, Property> byName = new HashMap<>();
+			for (Method getter : getters) {
+				Property property = new Property(getter);
+				properties.add(property);
+				byName.putIfAbsent(property.getName(), property);
+			}
+			this.getters = Collections.unmodifiableList(getters);
+			this.properties = Collections.unmodifiableList(properties);
+			List<Property> sortedProperties = new ArrayList<>(properties);
+			sortedProperties.sort((p1, p2) -> p1.getName().compareTo(p2.getName()));
+			this.sortedProperties = Collections.unmodifiableList(sortedProperties);
+			this.byName = byName;
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package br.com.binarti.sjog;
+
+import java.util.Iterator;
+
+/**
+ * Access the items of a collection type.<br/>
+ * Items are read by index only when the adapter is random access, otherwise they are read through a cursor
+ * ({@link #iterator(Object)}), so visiting all items of any collection takes linear time.<br/>
+ * Adapters are chosen by {@link ObjectGraphPredicate#getCollectionAdapter(Class)}, after the adapters registered
+ * in {@link ObjectGraphBuilder#collectionAdapter(CollectionAdapter)}. The classes identified as collection by
+ * {@link ObjectGraphPredicate#isCollection(Class)} and the classes supported by a registered adapter are adapted,
+ * see {@link CollectionAdapters} for the adapters of iterables, streams and iterators.
+ *
+ * @author francofabio
+ *
+ */
+public interface CollectionAdapter {
+
+	/**
+	 * Determine if this adapter can access the items of a collection class
+	 * @param cls Runtime class of the collection
+	 */
+	boolean supports(Class<?> cls);
+
+	/**
+	 * Get the number of items of the collection. Not used for single pass collections.
+	 * @param collection The collection
+	 * @return Number of items
+	 */
+	int size(Object collection);
+
+	/**
+	 * Create a cursor over the items of the collection, from the first item
+	 * @param collection The collection
+	 * @return Cursor over the items
+	 */
+	Iterator<?> iterator(Object collection);
+
+	/**
+	 * Determine if {@link #get(Object, int)} takes constant time
+	 */
+	default boolean isRandomAccess() {
+		return false;
+	}
+
+	/**
+	 * Get an item by index. Only used for random access collections.
+	 * @param collection The collection
+	 * @param index Index of the item
+	 * @return The item
+	 */
+	default Object get(Object collection, int index) {
+		throw new UnsupportedOperationException("Collection does not support random access");
+	}
+
+	/**
+	 * Determine if the items can be traversed only once, like streams and iterators.<br/>
+	 * Items of single pass collections are kept after traversed, so they can be visited again.
+	 */
+	default boolean isSinglePass() {
+		return false;
+	}
+
+}
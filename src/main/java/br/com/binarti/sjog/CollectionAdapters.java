@@ -0,0 +1,209 @@
+package br.com.binarti.sjog;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.stream.BaseStream;
+
+/**
+ * Collection adapters: arrays, random access lists, sequential lists, sets, deques and any other collection are
+ * built in.<br/>
+ * Iterables, streams and iterators are not collections by default, because many beans implement them. They are
+ * adapted only when registered in {@link ObjectGraphBuilder#collectionAdapter(CollectionAdapter)}:
+ *
+ * <pre>
+ * new ObjectGraphBuilder().collectionAdapter(CollectionAdapters.STREAM).include("itens").build(order);
+ * </pre>
+ *
+ * @author francofabio
+ *
+ */
+public final class CollectionAdapters {
+
+	static final CollectionAdapter ARRAY = new CollectionAdapter() {
+		@Override
+		public boolean supports(Class<?> cls) {
+			return cls.isArray() && !cls.getComponentType().isPrimitive();
+		}
+
+		@Override
+		public int size(Object collection) {
+			return ((Object[]) collection).length;
+		}
+
+		@Override
+		public Iterator<?> iterator(Object collection) {
+			return Arrays.asList((Object[]) collection).iterator();
+		}
+
+		@Override
+		public boolean isRandomAccess() {
+			return true;
+		}
+
+		@Override
+		public Object get(Object collection, int index) {
+			return ((Object[]) collection)[index];
+		}
+	};
+
+	static final CollectionAdapter RANDOM_ACCESS_LIST = new CollectionAdapter() {
+		@Override
+		public boolean supports(Class<?> cls) {
+			return List.class.isAssignableFrom(cls) && RandomAccess.class.isAssignableFrom(cls);
+		}
+
+		@Override
+		public int size(Object collection) {
+			return ((List<?>) collection).size();
+		}
+
+		@Override
+		public Iterator<?> iterator(Object collection) {
+			return ((List<?>) collection).iterator();
+		}
+
+		@Override
+		public boolean isRandomAccess() {
+			return true;
+		}
+
+		@Override
+		public Object get(Object collection, int index) {
+			return ((List<?>) collection).get(index);
+		}
+	};
+
+	static final CollectionAdapter SEQUENTIAL_LIST = new SequentialCollectionAdapter(List.class);
+
+	static final CollectionAdapter SET = new SequentialCollectionAdapter(Set.class);
+
+	static final CollectionAdapter DEQUE = new SequentialCollectionAdapter(Deque.class);
+
+	static final CollectionAdapter COLLECTION = new SequentialCollectionAdapter(Collection.class);
+
+	/**
+	 * Adapter of any {@link Iterable}. Iterables that are not collections are traversed to get their size.
+	 */
+	public static final CollectionAdapter ITERABLE = new CollectionAdapter() {
+		@Override
+		public boolean supports(Class<?> cls) {
+			return Iterable.class.isAssignableFrom(cls);
+		}
+
+		@Override
+		public int size(Object collection) {
+			if (collection instanceof Collection) {
+				return ((Collection<?>) collection).size();
+			}
+			int size = 0;
+			for (Iterator<?> it = iterator(collection); it.hasNext(); it.next()) {
+				size++;
+			}
+			return size;
+		}
+
+		@Override
+		public Iterator<?> iterator(Object collection) {
+			return ((Iterable<?>) collection).iterator();
+		}
+	};
+
+	/**
+	 * Adapter of streams, consumed once
+	 */
+	public static final CollectionAdapter STREAM = new SinglePassAdapter() {
+		@Override
+		public boolean supports(Class<?> cls) {
+			return BaseStream.class.isAssignableFrom(cls);
+		}
+
+		@Override
+		public Iterator<?> iterator(Object collection) {
+			return ((BaseStream<?, ?>) collection).iterator();
+		}
+	};
+
+	/**
+	 * Adapter of iterators, consumed once
+	 */
+	public static final CollectionAdapter ITERATOR = new SinglePassAdapter() {
+		@Override
+		public boolean supports(Class<?> cls) {
+			return Iterator.class.isAssignableFrom(cls);
+		}
+
+		@Override
+		public Iterator<?> iterator(Object collection) {
+			return (Iterator<?>) collection;
+		}
+	};
+
+	private static final CollectionAdapter[] BUILT_IN = {
+		ARRAY, RANDOM_ACCESS_LIST, SEQUENTIAL_LIST, SET, DEQUE, COLLECTION
+	};
+
+	private static final ClassValue<CollectionAdapter> ADAPTERS = new ClassValue<CollectionAdapter>() {
+		@Override
+		protected CollectionAdapter computeValue(Class<?> type) {
+			for (CollectionAdapter adapter : BUILT_IN) {
+				if (adapter.supports(type)) {
+					return adapter;
+				}
+			}
+			return null;
+		}
+	};
+
+	private CollectionAdapters() {
+	}
+
+	/**
+	 * Find the built-in adapter of a collection class
+	 * @param cls Runtime class of the collection
+	 * @return The adapter, or <code>null</code> if there is no built-in adapter for the class
+	 */
+	static CollectionAdapter find(Class<?> cls) {
+		return ADAPTERS.get(cls);
+	}
+
+	private static final class SequentialCollectionAdapter implements CollectionAdapter {
+		private final Class<?> type;
+
+		SequentialCollectionAdapter(Class<?> type) {
+			this.type = type;
+		}
+
+		@Override
+		public boolean supports(Class<?> cls) {
+			return type.isAssignableFrom(cls);
+		}
+
+		@Override
+		public int size(Object collection) {
+			return ((Collection<?>) collection).size();
+		}
+
+		@Override
+		public Iterator<?> iterator(Object collection) {
+			return ((Collection<?>) collection).iterator();
+		}
+	}
+
+	private static abstract class SinglePassAdapter implements CollectionAdapter {
+		@Override
+		public int size(Object collection) {
+			throw new UnsupportedOperationException("Size of single pass collections is unknown");
+		}
+
+		@Override
+		public boolean isSinglePass() {
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+package br.com.binarti.sjog;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Items of a collection, read through a {@link CollectionAdapter}.<br/>
+ * Random access collections are read by index. Other collections are read by a cursor that moves forward, and is
+ * restarted only when an item before the cursor is requested, so visiting the items in order takes linear time.
+ * Items of single pass collections are kept as the cursor moves.<br/>
+ * Random access collections are read without locks, the cursor is used by one thread at a time.
+ *
+ * @author francofabio
+ *
+ */
+final class CollectionValues {
+
+	private final Object collection;
+	private final CollectionAdapter adapter;
+	private Iterator<?> cursor;
+	//index of the next item of the cursor
+	private int position;
+	//items already traversed of single pass collections
+	private List<Object> traversed;
+	private int size = -1;
+
+	CollectionValues(Object collection, CollectionAdapter adapter) {
+		this.collection = collection;
+		this.adapter = adapter;
+	}
+
+	/**
+	 * Determine if the items are read by index, without the cursor
+	 */
+	boolean isRandomAccess() {
+		return adapter.isRandomAccess();
+	}
+
+	/**
+	 * Number of items. Single pass collections are traversed until the end.
+	 */
+	synchronized int size() {
+		if (size < 0) {
+			if (adapter.isSinglePass()) {
+				traverse(Integer.MAX_VALUE);
+				size = traversed.size();
+			} else {
+				size = adapter.size(collection);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Number of items, counting at most a given number of items of single pass collections
+	 * @param max Maximum number of items counted
+	 */
+	synchronized int size(int max) {
+		if (size < 0 && adapter.isSinglePass()) {
+			traverse(max - 1);
+			if (traversed.size() < max) {
+				size = traversed.size();
+			}
+			return Math.min(traversed.size(), max);
+		}
+		return Math.min(size(), max);
+	}
+
+	/**
+	 * Determine if there is an item at a given index
+	 */
+	synchronized boolean contains(int index) {
+		if (index < 0) {
+			return false;
+		}
+		if (adapter.isSinglePass()) {
+			return traverse(index);
+		}
+		return index < size();
+	}
+
+	/**
+	 * Get an item by index. The index must be valid, see {@link #contains(int)}.
+	 */
+	Object get(int index) {
+		if (adapter.isRandomAccess()) {
+			return adapter.get(collection, index);
+		}
+		return next(index);
+	}
+
+	/**
+	 * Get an item by index moving the cursor
+	 */
+	private synchronized Object next(int index) {
+		if (adapter.isSinglePass()) {
+			traverse(index);
+			return traversed.get(index);
+		}
+		if (cursor == null || index < position) {
+			cursor = adapter.iterator(collection);
+			position = 0;
+		}
+		while (position < index) {
+			cursor.next();
+			position++;
+		}
+		position++;
+		return cursor.next();
+	}
+
+	/**
+	 * Move the cursor of a single pass collection until an index
+	 * @return <code>true</code> if the item at the index exists
+	 */
+	private boolean traverse(int index) {
+		if (traversed == null) {
+			traversed = new ArrayList<>();
+			cursor = adapter.iterator(collection);
+		}
+		while (traversed.size() <= index && cursor.hasNext()) {
+			traversed.add(cursor.next());
+		}
+		return index < traversed.size();
+	}
+
+}
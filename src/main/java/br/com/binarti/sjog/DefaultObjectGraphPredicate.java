@@ -1,6 +1,5 @@
 package br.com.binarti.sjog;
 
-import java.util.Collection;
 import java.util.Map;
 
 public class DefaultObjectGraphPredicate implements ObjectGraphPredicate {
@@ -12,7 +11,7 @@ public class DefaultObjectGraphPredicate implements ObjectGraphPredicate {
 
 	@Override
 	public boolean hasChild(Class<?> cls) {
-		return !isPrimitive(cls) && !Collection.class.isAssignableFrom(cls) && !Map.class.isAssignableFrom(cls);
+		return !isPrimitive(cls) && !isCollection(cls) && !Map.class.isAssignableFrom(cls);
 	}
 	
 	@Override
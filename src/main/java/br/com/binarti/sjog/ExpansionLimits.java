@@ -0,0 +1,73 @@
+package br.com.binarti.sjog;
+
+/**
+ * Limits of the expansion of an object graph. A limit of zero or less means unlimited.
+ *
+ * @author francofabio
+ *
+ */
+final class ExpansionLimits {
+
+	static final ExpansionLimits UNLIMITED = new ExpansionLimits(0, 0, 0, 0);
+
+	private final int maxDepth;
+	private final int maxNodes;
+	private final int maxCollectionItems;
+	private final long timeoutMillis;
+
+	private ExpansionLimits(int maxDepth, int maxNodes, int maxCollectionItems, long timeoutMillis) {
+		this.maxDepth = maxDepth;
+		this.maxNodes = maxNodes;
+		this.maxCollectionItems = maxCollectionItems;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Maximum depth of an expanded node, the root node has depth zero
+	 */
+	int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Maximum number of nodes created by expansion in a graph
+	 */
+	int getMaxNodes() {
+		return maxNodes;
+	}
+
+	/**
+	 * Maximum number of items of a collection node
+	 */
+	int getMaxCollectionItems() {
+		return maxCollectionItems;
+	}
+
+	/**
+	 * Time, after a graph is built, after which nodes are not expanded
+	 */
+	long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	boolean isUnlimited() {
+		return maxDepth <= 0 && maxNodes <= 0 && maxCollectionItems <= 0 && timeoutMillis <= 0;
+	}
+
+	ExpansionLimits maxDepth(int maxDepth) {
+		return new ExpansionLimits(maxDepth, maxNodes, maxCollectionItems, timeoutMillis);
+	}
+
+	ExpansionLimits maxNodes(int maxNodes) {
+		return new ExpansionLimits(maxDepth, maxNodes, maxCollectionItems, timeoutMillis);
+	}
+
+	ExpansionLimits maxCollectionItems(int maxCollectionItems) {
+		return new ExpansionLimits(maxDepth, maxNodes, maxCollectionItems, timeoutMillis);
+	}
+
+	ExpansionLimits timeoutMillis(long timeoutMillis) {
+		return new ExpansionLimits(maxDepth, maxNodes, maxCollectionItems, timeoutMillis);
+	}
+
+}
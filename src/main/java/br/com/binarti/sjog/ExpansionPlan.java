@@ -0,0 +1,126 @@
+package br.com.binarti.sjog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The properties of a class that survive the include/exclude rules at a given path position.<br/>
+ * A plan is computed once for each context, rule (path without collection indexes) and runtime class,
+ * so expanding many objects of the same class at the same position, like items of a collection, just
+ * executes the plan.
+ *
+ * @author francofabio
+ *
+ */
+final class ExpansionPlan {
+
+	static final ExpansionPlan EMPTY = new ExpansionPlan(new ArrayList<>());
+
+	private final Step[] steps;
+	private final Map<String, Step> stepsByName;
+
+	private ExpansionPlan(List<Step> steps) {
+		this.steps = steps.toArray(new Step[steps.size()]);
+		this.stepsByName = new HashMap<>();
+		for (Step step : steps) {
+			stepsByName.putIfAbsent(step.getProperty().getName(), step);
+		}
+	}
+
+	/**
+	 * Create the expansion plan of a class
+	 * @param cls Runtime class of the object to be expanded
+	 * @param parentRule Rule of the node being expanded
+	 * @param isRootChild Determine whether the children are root node children
+	 * @param context Context with include/exclude rules
+	 * @return The expansion plan
+	 */
+	static ExpansionPlan create(Class<?> cls, PathRule parentRule, boolean isRootChild, ObjectGraphContext context) {
+		ObjectGraphPredicate predicate = context.getPredicate();
+		if (!predicate.hasChild(cls) || context.isCollection(cls)) {
+			return EMPTY;
+		}
+		List<Step> steps = new ArrayList<>();
+		ClassMetadata metadata = ClassMetadata.of(cls);
+		for (Property property : context.isSortedByName() ? metadata.sortedProperties() : metadata.properties()) {
+			boolean isPrimitive = predicate.isPrimitive(property.getType());
+			PathRule rule = parentRule.child(property.getName());
+			if (!context.excluded(rule, isPrimitive, isRootChild) && context.included(parentRule, rule, isPrimitive)) {
+				steps.add(new Step(property, rule, isPrimitive, context.isCollection(property.getType()), steps.size()));
+			}
+		}
+		return steps.isEmpty() ? EMPTY : new ExpansionPlan(steps);
+	}
+
+	/**
+	 * Number of included properties
+	 */
+	int size() {
+		return steps.length;
+	}
+
+	/**
+	 * Included property at a given position
+	 */
+	Step step(int index) {
+		return steps[index];
+	}
+
+	/**
+	 * Included property by name
+	 * @param name Property name
+	 * @return The step of the property, or <code>null</code> if the property is not included
+	 */
+	Step step(String name) {
+		return stepsByName.get(name);
+	}
+
+	/**
+	 * An included property and the flags of the node created for it
+	 */
+	static final class Step {
+		private final Property property;
+		private final PathRule rule;
+		private final boolean primitive;
+		private final boolean collectionType;
+		private final int position;
+
+		private Step(Property property, PathRule rule, boolean primitive, boolean collectionType, int position) {
+			this.property = property;
+			this.rule = rule;
+			this.primitive = primitive;
+			this.collectionType = collectionType;
+			this.position = position;
+		}
+
+		Property getProperty() {
+			return property;
+		}
+
+		PathRule getRule() {
+			return rule;
+		}
+
+		boolean isPrimitive() {
+			return primitive;
+		}
+
+		/**
+		 * Determine whether the declared type of the property is a collection, used when the value is <code>null</code>
+		 */
+		boolean isCollectionType() {
+			return collectionType;
+		}
+
+		/**
+		 * Position of the step in the plan, which is the position of the child in the expanded children when they
+		 * are neither sorted nor truncated
+		 */
+		int getPosition() {
+			return position;
+		}
+	}
+
+}
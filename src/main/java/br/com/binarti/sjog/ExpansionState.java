@@ -0,0 +1,174 @@
+package br.com.binarti.sjog;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State shared by the nodes of one object graph: the context, the identity map of the values and the expansion budget.<br/>
+ * Graphs without identity tracking and without limits skip the identity map and the budget.<br/>
+ * The state is updated without locks by the threads expanding the graph.
+ *
+ * @author francofabio
+ *
+ */
+final class ExpansionState {
+
+	private final ObjectGraphContext context;
+	private final ConcurrentMap<IdentityKey, Node> identities;
+	private final boolean limited;
+	private final int maxDepth;
+	private final int maxCollectionItems;
+	private final boolean limitNodes;
+	private final long deadline;
+	private final boolean limitTime;
+	private final AtomicInteger remainingNodes;
+	private volatile boolean truncated;
+
+	private ExpansionState(ObjectGraphContext context, ConcurrentMap<IdentityKey, Node> identities, ExpansionLimits limits) {
+		this.context = context;
+		this.identities = identities;
+		this.limited = !limits.isUnlimited();
+		this.maxDepth = (limits.getMaxDepth() > 0) ? limits.getMaxDepth() : Integer.MAX_VALUE;
+		this.maxCollectionItems = (limits.getMaxCollectionItems() > 0) ? limits.getMaxCollectionItems() : Integer.MAX_VALUE;
+		this.limitNodes = limits.getMaxNodes() > 0;
+		this.remainingNodes = new AtomicInteger(limits.getMaxNodes());
+		this.limitTime = limits.getTimeoutMillis() > 0;
+		this.deadline = limitTime ? System.nanoTime() + limits.getTimeoutMillis() * 1000000L : 0;
+	}
+
+	/**
+	 * Create the state of a graph being built
+	 * @param context Context of the graph, <code>null</code> for nodes created without context
+	 * @return The state
+	 */
+	static ExpansionState create(ObjectGraphContext context) {
+		if (context == null) {
+			return new ExpansionState(null, null, ExpansionLimits.UNLIMITED);
+		}
+		boolean trackIdentities = context.getIdentityMode() != IdentityMode.NONE;
+		return new ExpansionState(context, trackIdentities ? new ConcurrentHashMap<>() : null, context.getLimits());
+	}
+
+	/**
+	 * Context of the graph
+	 */
+	ObjectGraphContext context() {
+		return context;
+	}
+
+	/**
+	 * Determine if the expansion has any limit
+	 */
+	boolean isLimited() {
+		return limited;
+	}
+
+	/**
+	 * Determine if the depth of the nodes is limited, so nodes must compute their depth to be expanded
+	 */
+	boolean limitsDepth() {
+		return maxDepth != Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Determine if the identities of the values are tracked
+	 */
+	boolean tracksIdentities() {
+		return identities != null;
+	}
+
+	/**
+	 * Register the node of a value, if the value has no node yet with the same rule.<br/>
+	 * Nodes of the same value with different rules have different children, so they are not references.
+	 * @param rule Include/exclude rule of the node
+	 * @return The first node registered for the value and the rule
+	 */
+	Node register(Object value, PathRule rule, Node node) {
+		Node first = identities.putIfAbsent(new IdentityKey(value, rule), node);
+		return (first == null) ? node : first;
+	}
+
+	/**
+	 * Remove the node of a value, if it is the node registered for the value
+	 * @return <code>true</code> if the node was registered for the value
+	 */
+	boolean unregister(Object value, PathRule rule, Node node) {
+		return identities.remove(new IdentityKey(value, rule), node);
+	}
+
+	/**
+	 * Determine if the children of a node can be created
+	 * @param depth Depth of the node
+	 */
+	boolean canExpand(int depth) {
+		if (depth >= maxDepth || (limitTime && System.nanoTime() - deadline > 0)) {
+			truncated = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Number of items of a collection that must be counted to know if the collection is truncated
+	 */
+	int countedItems() {
+		return (maxCollectionItems == Integer.MAX_VALUE) ? maxCollectionItems : maxCollectionItems + 1;
+	}
+
+	/**
+	 * Reserve nodes to be created
+	 * @param nodes Number of nodes needed
+	 * @param collection Determine if the nodes are items of a collection
+	 * @return Number of nodes granted, less than needed if the expansion is truncated
+	 */
+	int reserve(int nodes, boolean collection) {
+		int granted = collection ? Math.min(nodes, maxCollectionItems) : nodes;
+		if (limitNodes) {
+			int remaining;
+			do {
+				remaining = remainingNodes.get();
+				granted = Math.min(granted, Math.max(remaining, 0));
+			} while (!remainingNodes.compareAndSet(remaining, remaining - granted));
+		}
+		if (granted < nodes) {
+			truncated = true;
+		}
+		return granted;
+	}
+
+	/**
+	 * Determine if the expansion of any node of the graph was truncated
+	 */
+	boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Key of a value and a rule, both compared by identity
+	 */
+	private static final class IdentityKey {
+		private final Object value;
+		private final PathRule rule;
+
+		IdentityKey(Object value, PathRule rule) {
+			this.value = value;
+			this.rule = rule;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(value) + System.identityHashCode(rule);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof IdentityKey)) {
+				return false;
+			}
+			IdentityKey other = (IdentityKey) obj;
+			return other.value == value && other.rule == rule;
+		}
+	}
+
+}
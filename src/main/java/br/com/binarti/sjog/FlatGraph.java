@@ -0,0 +1,262 @@
+package br.com.binarti.sjog;
+
+import static br.com.binarti.sjog.Node.ROOT_NODE;
+
+import java.util.Iterator;
+
+/**
+ * Object graph flattened into columns indexed by node number, see {@link GraphSnapshot} and {@link MappedGraph}.<br/>
+ * Nodes are numbered in breadth first order, the root node is the node <code>0</code>, and the children of a node
+ * have consecutive numbers, so the item of a collection is found by its index.
+ * Missing nodes are represented by <code>-1</code>.<br/>
+ * Subclasses provide the columns, the navigation by name and path is implemented here.
+ *
+ * @author francofabio
+ *
+ */
+abstract class FlatGraph {
+
+	//Flags of the nodes
+	static final int COLLECTION = 1;
+	static final int PRIMITIVE = 1 << 1;
+	static final int ITEM = 1 << 2;
+	static final int REFERENCE = 1 << 3;
+	static final int TRUNCATED = 1 << 4;
+
+	/**
+	 * Number of nodes of the graph
+	 */
+	public abstract int size();
+
+	/**
+	 * Get the parent of a node
+	 * @return Number of the parent, or <code>-1</code> for the root node
+	 */
+	public abstract int getParent(int node);
+
+	/**
+	 * Get the first child of a node.<br/>
+	 * Children of a reference are the children of the first occurrence in {@link IdentityMode#SHARE} mode.
+	 * @return Number of the first child, or <code>-1</code> if the node has no children
+	 */
+	public abstract int getFirstChild(int node);
+
+	/**
+	 * Get the next sibling of a node
+	 * @return Number of the next sibling, or <code>-1</code> if the node is the last child of its parent
+	 */
+	public abstract int getNextSibling(int node);
+
+	/**
+	 * Get the node of the first occurrence of the value of a node
+	 * @return Number of the first occurrence, or <code>-1</code> if the node is not a reference
+	 * @see Node#getReference()
+	 */
+	public abstract int getReference(int node);
+
+	/**
+	 * Get the value of a node
+	 */
+	public abstract Object getValue(int node);
+
+	/**
+	 * Determine if the value of a node is <code>null</code>
+	 */
+	abstract boolean isNull(int node);
+
+	/**
+	 * Flags of a node
+	 */
+	abstract int flags(int node);
+
+	/**
+	 * Number of the name of a node in the names table
+	 * @return The number of the name, or <code>-1</code> for collection items
+	 */
+	abstract int nameId(int node);
+
+	/**
+	 * Get a name of the names table
+	 */
+	abstract String name(int nameId);
+
+	/**
+	 * Compare a name of the names table
+	 */
+	boolean nameEquals(int nameId, String name) {
+		return name(nameId).equals(name);
+	}
+
+	/**
+	 * Get the root node
+	 * @return The number of the root node, always <code>0</code>
+	 */
+	public int getRoot() {
+		return 0;
+	}
+
+	/**
+	 * Get the name of a node
+	 * @param node Number of the node
+	 * @return Name of the node, the property name, the index of an item or the key of a map entry
+	 */
+	public String getName(int node) {
+		int nameId = nameId(node);
+		if (nameId < 0) {
+			//items of a collection are numbered in order, starting from the first child of the collection
+			return NodePath.indexNode(node - getFirstChild(getParent(node)));
+		}
+		return name(nameId);
+	}
+
+	/**
+	 * Get the full path of a node
+	 * @param node Number of the node
+	 * @return Path of the node, computed from the names of the node and its parents
+	 */
+	public String getPath(int node) {
+		int depth = 0;
+		for (int current = node; current > 0; current = getParent(current)) {
+			depth++;
+		}
+		int[] ancestors = new int[depth];
+		for (int current = node; current > 0; current = getParent(current)) {
+			ancestors[--depth] = current;
+		}
+		StringBuilder path = new StringBuilder(getName(0));
+		for (int ancestor : ancestors) {
+			String name = getName(ancestor);
+			if (!name.startsWith("[")) {
+				path.append('.');
+			}
+			path.append(name);
+		}
+		return path.toString();
+	}
+
+	/**
+	 * Determine if a node refer a collection
+	 */
+	public boolean isCollection(int node) {
+		return (flags(node) & COLLECTION) != 0;
+	}
+
+	/**
+	 * Determine if a node represents an primitive data
+	 */
+	public boolean isPrimitive(int node) {
+		return (flags(node) & PRIMITIVE) != 0;
+	}
+
+	/**
+	 * Determine if children of a node were omitted because of the limits of the expansion
+	 * @see Node#isTruncated()
+	 */
+	public boolean isTruncated(int node) {
+		return (flags(node) & TRUNCATED) != 0;
+	}
+
+	/**
+	 * Get a direct child of a node by name
+	 * @param node Number of the node
+	 * @param name Name of the child, like <code>name</code>, <code>[0]</code> or <code>['key']</code>
+	 * @return Number of the child, or <code>-1</code> if not found
+	 */
+	public int getChild(int node, String name) {
+		NodePath path = NodePath.create(name);
+		return child(node, path.isRoot() ? path : lastSegment(path));
+	}
+
+	private static NodePath lastSegment(NodePath path) {
+		NodePath last = path;
+		for (Iterator<NodePath> it = path.iterator(); it.hasNext();) {
+			last = it.next();
+		}
+		return last;
+	}
+
+	private int child(int node, NodePath segment) {
+		int first = getFirstChild(node);
+		if (first < 0) {
+			return -1;
+		}
+		if (segment.isCollectionItem()) {
+			int item = first + segment.getIndex();
+			return (segment.getIndex() >= 0 && item < size() && (flags(item) & ITEM) != 0
+					&& getParent(item) == getParent(first)) ? item : -1;
+		}
+		String name = segment.getNode();
+		for (int child = first; child >= 0; child = getNextSibling(child)) {
+			int nameId = nameId(child);
+			if (nameId >= 0 && nameEquals(nameId, name)) {
+				return child;
+			}
+		}
+		return -1;
+	}
+
+	private static NodePath normalizedPath(String name) {
+		return NodePath.create(name.startsWith(ROOT_NODE) ? name : ROOT_NODE + "." + name);
+	}
+
+	/**
+	 * Get a node by name or full path
+	 * @param name The name or full path of node
+	 * @return Number of the node, or <code>-1</code> if not found
+	 */
+	public int getNode(String name) {
+		Iterator<NodePath> it = normalizedPath(name).iterator();
+		int node = -1;
+		while (it.hasNext()) {
+			NodePath segment = it.next();
+			node = segment.getNode().equals(ROOT_NODE) ? 0 : child(node, segment);
+			if (node < 0) {
+				return -1;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Get property value.<br/>
+	 * Unlike {@link ObjectGraph#get(String)}, only the nodes of the flattened graph can be read.
+	 * @param name Property name
+	 * @return Property value, or <code>null</code> if an object in the path is <code>null</code>
+	 * @throws ObjectGraphException If the property is not in the flattened graph
+	 */
+	public Object get(String name) {
+		Iterator<NodePath> it = normalizedPath(name).iterator();
+		int node = -1;
+		while (it.hasNext()) {
+			NodePath segment = it.next();
+			if (node >= 0 && isNull(node)) {
+				return null;
+			}
+			if (segment.getNode().equals(ROOT_NODE)) {
+				node = 0;
+				continue;
+			}
+			Object parentValue = getValue(node);
+			if (segment.isCollectionItem() && PrimitiveValues.isPrimitiveArray(parentValue)) {
+				int index = segment.getIndex();
+				if (it.hasNext() || index < 0 || index >= PrimitiveValues.length(parentValue)) {
+					throw new IndexOutOfBoundsException("Unreachable collection item: " + segment.getPath());
+				}
+				return PrimitiveValues.get(parentValue, index);
+			}
+			int child = child(node, segment);
+			if (child < 0) {
+				if (segment.isCollectionItem()) {
+					throw new IndexOutOfBoundsException("Unreachable collection item: " + segment.getPath());
+				}
+				throw new ObjectGraphException("Property " + segment.getNode() + " not found in the flattened graph");
+			}
+			if (segment.isCollection() && !isCollection(child) && !PrimitiveValues.isPrimitiveArray(getValue(child))) {
+				throw new ObjectGraphException("Property " + segment.getNode() + " is not a collection");
+			}
+			node = child;
+		}
+		return getValue(node);
+	}
+
+}
@@ -0,0 +1,78 @@
+package br.com.binarti.sjog;
+
+/**
+ * A difference between two object graphs, see {@link GraphDiff}
+ *
+ * @author francofabio
+ *
+ */
+public final class GraphChange {
+
+	/**
+	 * Kind of the difference
+	 */
+	public enum Type {
+
+		/**
+		 * The node exists only in the new graph
+		 */
+		ADDED,
+
+		/**
+		 * The node exists only in the old graph
+		 */
+		REMOVED,
+
+		/**
+		 * The node exists in both graphs with different values
+		 */
+		CHANGED
+
+	}
+
+	private final Type type;
+	private final String path;
+	private final Object oldValue;
+	private final Object newValue;
+
+	GraphChange(Type type, String path, Object oldValue, Object newValue) {
+		this.type = type;
+		this.path = path;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Get the path of the node. The path of the new graph is used, except for removed nodes.
+	 * @return Full path of the node
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Get the value in the old graph
+	 * @return The value, or <code>null</code> for added nodes
+	 */
+	public Object getOldValue() {
+		return oldValue;
+	}
+
+	/**
+	 * Get the value in the new graph
+	 * @return The value, or <code>null</code> for removed nodes
+	 */
+	public Object getNewValue() {
+		return newValue;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + path + " [" + oldValue + " -> " + newValue + "]";
+	}
+
+}
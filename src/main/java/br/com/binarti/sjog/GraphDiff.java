@@ -0,0 +1,282 @@
+package br.com.binarti.sjog;
+
+import static br.com.binarti.sjog.Node.ROOT_NODE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Structural difference between two object graphs built with the same context.<br/>
+ * The graphs are walked together and the differences are produced while the stream is consumed, in the order of
+ * the nodes of the graphs. Subtrees of the same object in both graphs are skipped without being expanded.
+ * Primitive values are compared with <code>equals</code>, and objects without children by identity or
+ * <code>equals</code>. Added and removed nodes are reported once, without their subtrees.<br/>
+ * Items of collections are matched by index, or by the value of a key path, see {@link #matchBy(String, String)}.
+ * Back references of {@link IdentityMode#REFERENCE} and {@link IdentityMode#SHARE} are compared by the path of
+ * their first occurrence, and are not walked.
+ *
+ * <pre>
+ * new GraphDiff().matchBy("itens", "id").compare(before, after).forEach(System.out::println);
+ * </pre>
+ *
+ * @author francofabio
+ *
+ */
+public final class GraphDiff {
+
+	private final Map<String, String> keyPaths = new HashMap<>();
+
+	/**
+	 * Match the items of a collection by the value of a key, instead of the index.<br/>
+	 * Items with the same key are compared, so items moved to another index are not reported. Items without key are
+	 * reported as removed and added.
+	 * @param collectionPath Path of the collection, like <code>orders.itens</code>. Item indexes and map keys are
+	 * ignored, so the key is used for the collections of all items and entries, like <code>prices['EUR'].tiers</code>
+	 * @param keyPath Path of the key relative to the item, like <code>id</code>. The key must be included in the graphs
+	 * @return This diff
+	 */
+	public GraphDiff matchBy(String collectionPath, String keyPath) {
+		keyPaths.put(collectionPath, keyPath);
+		return this;
+	}
+
+	/**
+	 * Compare two object graphs
+	 * @param before The old graph
+	 * @param after The new graph
+	 * @return Stream of the differences, produced on demand
+	 * @throws ObjectGraphException If the graphs were built with different contexts
+	 */
+	public Stream<GraphChange> compare(ObjectGraph before, ObjectGraph after) {
+		ObjectGraphContext context = before.getContext();
+		if (context != after.getContext()) {
+			throw new ObjectGraphException("Object graphs built with different contexts can not be compared");
+		}
+		//collections are matched by their include/exclude rule, which is the same for all indexes and map keys
+		Map<PathRule, String> collectionKeys = new IdentityHashMap<>();
+		for (Map.Entry<String, String> keyPath : keyPaths.entrySet()) {
+			String collectionPath = keyPath.getKey();
+			PathRule rule = context.rule(collectionPath.startsWith("[") ? ROOT_NODE + collectionPath : collectionPath);
+			if (rule != PathRule.NONE && rule != PathRule.EXCLUDED) {
+				collectionKeys.put(rule, keyPath.getValue());
+			}
+		}
+		Changes changes = new Changes(before.getRoot(), after.getRoot(), collectionKeys);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(changes, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * Pair of nodes at the same position of both graphs. One of them is <code>null</code> for added or removed nodes.
+	 */
+	private static final class Pair {
+		private final Node before;
+		private final Node after;
+
+		Pair(Node before, Node after) {
+			this.before = before;
+			this.after = after;
+		}
+	}
+
+	/**
+	 * Depth first walk of both graphs. The children of a pair are visited by an iterator pushed on the stack, so
+	 * collection items are created only when reached.
+	 */
+	private static final class Changes implements Iterator<GraphChange> {
+
+		private final Map<PathRule, String> collectionKeys;
+		private final Deque<Iterator<Pair>> stack = new ArrayDeque<>();
+		private GraphChange next;
+
+		Changes(Node before, Node after, Map<PathRule, String> collectionKeys) {
+			this.collectionKeys = collectionKeys;
+			List<Pair> root = new ArrayList<>(1);
+			root.add(new Pair(before, after));
+			stack.push(root.iterator());
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && !stack.isEmpty()) {
+				Iterator<Pair> pairs = stack.peek();
+				if (pairs.hasNext()) {
+					next = compare(pairs.next());
+				} else {
+					stack.pop();
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public GraphChange next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			GraphChange change = next;
+			next = null;
+			return change;
+		}
+
+		/**
+		 * Compare a pair of nodes, pushing the children when both nodes have children
+		 * @return The difference of the pair, or <code>null</code> if the values are equal or only the children differ
+		 */
+		private GraphChange compare(Pair pair) {
+			Node before = pair.before;
+			Node after = pair.after;
+			if (before == null) {
+				return new GraphChange(GraphChange.Type.ADDED, after.getPath().getPath(), null, after.getValue());
+			}
+			if (after == null) {
+				return new GraphChange(GraphChange.Type.REMOVED, before.getPath().getPath(), before.getValue(), null);
+			}
+			Object oldValue = before.getValue();
+			Object newValue = after.getValue();
+			if (oldValue == newValue) {
+				//the same object, or both null
+				return null;
+			}
+			if (oldValue == null || newValue == null || before.isPrimitive() || after.isPrimitive()
+					|| PrimitiveValues.isPrimitiveArray(oldValue) || PrimitiveValues.isPrimitiveArray(newValue)) {
+				return Objects.deepEquals(oldValue, newValue) ? null : changed(after, oldValue, newValue);
+			}
+			if (before.isReference() || after.isReference()) {
+				Node oldReference = before.getReference();
+				Node newReference = after.getReference();
+				boolean same = oldReference != null && newReference != null && oldReference.getPath().equals(newReference.getPath());
+				return same ? null : changed(after, oldValue, newValue);
+			}
+			List<Node> oldChildren = before.getChildren();
+			List<Node> newChildren = after.getChildren();
+			if (oldChildren.isEmpty() && newChildren.isEmpty()) {
+				return oldValue.equals(newValue) ? null : changed(after, oldValue, newValue);
+			}
+			if (before.isCollection() && after.isCollection()) {
+				String keyPath = collectionKeys.isEmpty() ? null : collectionKeys.get(after.rule());
+				stack.push((keyPath == null) ? byIndex(oldChildren, newChildren) : byKey(oldChildren, newChildren, keyPath));
+			} else {
+				stack.push(byName(oldChildren, newChildren));
+			}
+			return null;
+		}
+
+		private static GraphChange changed(Node after, Object oldValue, Object newValue) {
+			return new GraphChange(GraphChange.Type.CHANGED, after.getPath().getPath(), oldValue, newValue);
+		}
+
+		/**
+		 * Match the properties of objects and the entries of maps by name
+		 */
+		private static Iterator<Pair> byName(List<Node> oldChildren, List<Node> newChildren) {
+			List<Pair> pairs = new ArrayList<>(Math.max(oldChildren.size(), newChildren.size()));
+			if (sameNames(oldChildren, newChildren)) {
+				//objects of the same class have the same properties, in the same order
+				for (int i = 0; i < oldChildren.size(); i++) {
+					pairs.add(new Pair(oldChildren.get(i), newChildren.get(i)));
+				}
+				return pairs.iterator();
+			}
+			Map<String, Node> added = new LinkedHashMap<>();
+			for (Node child : newChildren) {
+				added.put(child.getName(), child);
+			}
+			for (Node child : oldChildren) {
+				pairs.add(new Pair(child, added.remove(child.getName())));
+			}
+			for (Node child : added.values()) {
+				pairs.add(new Pair(null, child));
+			}
+			return pairs.iterator();
+		}
+
+		private static boolean sameNames(List<Node> oldChildren, List<Node> newChildren) {
+			if (oldChildren.size() != newChildren.size()) {
+				return false;
+			}
+			for (int i = 0; i < oldChildren.size(); i++) {
+				if (!oldChildren.get(i).getName().equals(newChildren.get(i).getName())) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Match the items of collections by index. Items are created when the pair is visited.
+		 */
+		private static Iterator<Pair> byIndex(List<Node> oldItems, List<Node> newItems) {
+			return new Iterator<Pair>() {
+				private int index;
+
+				@Override
+				public boolean hasNext() {
+					return index < oldItems.size() || index < newItems.size();
+				}
+
+				@Override
+				public Pair next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					Node oldItem = (index < oldItems.size()) ? oldItems.get(index) : null;
+					Node newItem = (index < newItems.size()) ? newItems.get(index) : null;
+					index++;
+					return new Pair(oldItem, newItem);
+				}
+			};
+		}
+
+		/**
+		 * Match the items of collections by the value of a key. Old items are visited in order, followed by the
+		 * new items not matched.
+		 */
+		private static Iterator<Pair> byKey(List<Node> oldItems, List<Node> newItems, String keyPath) {
+			Map<Object, Node> added = new LinkedHashMap<>();
+			List<Node> unmatched = new ArrayList<>();
+			for (Node item : newItems) {
+				Object key = key(item, keyPath);
+				if (key == null || added.putIfAbsent(key, item) != null) {
+					unmatched.add(item);
+				}
+			}
+			List<Pair> pairs = new ArrayList<>(Math.max(oldItems.size(), newItems.size()));
+			for (Node item : oldItems) {
+				Object key = key(item, keyPath);
+				pairs.add(new Pair(item, (key == null) ? null : added.remove(key)));
+			}
+			for (Node item : added.values()) {
+				pairs.add(new Pair(null, item));
+			}
+			for (Node item : unmatched) {
+				pairs.add(new Pair(null, item));
+			}
+			return pairs.iterator();
+		}
+
+		private static Object key(Node item, String keyPath) {
+			if (item.getValue() == null) {
+				return null;
+			}
+			Node key = item.getChild(keyPath);
+			if (key == null) {
+				throw new ObjectGraphException("Key " + keyPath + " not found in " + item.getPath().getPath());
+			}
+			return key.getValue();
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+package br.com.binarti.sjog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of an expanded object graph, see {@link ObjectGraph#freeze()}.<br/>
+ * The nodes are flattened into a few arrays indexed by node number, so a graph of millions of nodes is held by a
+ * handful of large objects: parent, name, flags, first child and next sibling of each node, and the value array.
+ * See {@link FlatGraph} for the numbering of the nodes. A snapshot can be read by many threads.
+ *
+ * @author francofabio
+ *
+ */
+public final class GraphSnapshot extends FlatGraph {
+
+	private final int[] parents;
+	//Index in the names table, -1 for collection items
+	private final int[] names;
+	private final int[] flags;
+	private final int[] firstChildren;
+	private final int[] nextSiblings;
+	private final Object[] values;
+	private final String[] nameTable;
+	//Node of the first occurrence of each reference node, null when there is no reference
+	private final int[] references;
+
+	/**
+	 * Expand and flatten all nodes of a graph
+	 * @param root Root node of the graph
+	 * @param context Context of the graph
+	 */
+	GraphSnapshot(Node root, ObjectGraphContext context) {
+		//the list of nodes is the queue of the breadth first walk
+		List<Node> nodes = new ArrayList<>();
+		int[] parents = new int[16];
+		int[] firstChildren = new int[16];
+		nodes.add(root);
+		parents[0] = -1;
+		for (int i = 0; i < nodes.size(); i++) {
+			Node node = nodes.get(i);
+			List<Node> children = node.isReference() ? Collections.<Node>emptyList() : node.getChildren();
+			int first = nodes.size();
+			firstChildren[i] = children.isEmpty() ? -1 : first;
+			if (first + children.size() > parents.length) {
+				int capacity = Math.max(first + children.size(), parents.length * 2);
+				parents = Arrays.copyOf(parents, capacity);
+				firstChildren = Arrays.copyOf(firstChildren, capacity);
+			}
+			Arrays.fill(parents, first, first + children.size(), i);
+			nodes.addAll(children);
+		}
+		int size = nodes.size();
+		this.parents = Arrays.copyOf(parents, size);
+		this.firstChildren = Arrays.copyOf(firstChildren, size);
+		this.names = new int[size];
+		this.flags = new int[size];
+		this.nextSiblings = new int[size];
+		this.values = new Object[size];
+		Map<String, Integer> nameIds = new HashMap<>();
+		boolean hasReferences = false;
+		for (int i = 0; i < size; i++) {
+			Node node = nodes.get(i);
+			int parent = parents[i];
+			nextSiblings[i] = (i > 0 && i + 1 < size && parents[i + 1] == parent) ? i + 1 : -1;
+			values[i] = node.getValue();
+			//children of a collection are its items
+			boolean item = parent >= 0 && (flags[parent] & COLLECTION) != 0;
+			names[i] = item ? -1 : nameId(nameIds, node.getName());
+			boolean reference = node.isReference();
+			hasReferences |= reference;
+			flags[i] = (node.isCollection() ? COLLECTION : 0) | (node.isPrimitive() ? PRIMITIVE : 0) | (item ? ITEM : 0)
+					| (reference ? REFERENCE : 0) | (!reference && node.isTruncated() ? TRUNCATED : 0);
+		}
+		this.nameTable = new String[nameIds.size()];
+		for (Map.Entry<String, Integer> entry : nameIds.entrySet()) {
+			nameTable[entry.getValue()] = entry.getKey();
+		}
+		this.references = hasReferences ? references(nodes, context.getIdentityMode() == IdentityMode.SHARE) : null;
+	}
+
+	/**
+	 * Find the first occurrence of the reference nodes
+	 * @param share Determine if the references share the children of the first occurrence
+	 */
+	private int[] references(List<Node> nodes, boolean share) {
+		Map<Node, Integer> numbers = new IdentityHashMap<>(nodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			numbers.put(nodes.get(i), i);
+		}
+		int[] references = new int[nodes.size()];
+		for (int i = 0; i < nodes.size(); i++) {
+			Integer first = ((flags[i] & REFERENCE) != 0) ? numbers.get(nodes.get(i).getReference()) : null;
+			references[i] = (first == null) ? -1 : first;
+			if (first != null && share) {
+				firstChildren[i] = firstChildren[first];
+			}
+		}
+		return references;
+	}
+
+	private static int nameId(Map<String, Integer> nameIds, String name) {
+		Integer id = nameIds.get(name);
+		if (id == null) {
+			id = nameIds.size();
+			nameIds.put(name, id);
+		}
+		return id;
+	}
+
+	@Override
+	public int size() {
+		return parents.length;
+	}
+
+	@Override
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	@Override
+	public int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+
+	@Override
+	public int getNextSibling(int node) {
+		return nextSiblings[node];
+	}
+
+	@Override
+	public int getReference(int node) {
+		return (references == null) ? -1 : references[node];
+	}
+
+	@Override
+	public Object getValue(int node) {
+		return values[node];
+	}
+
+	@Override
+	boolean isNull(int node) {
+		return values[node] == null;
+	}
+
+	@Override
+	int flags(int node) {
+		return flags[node];
+	}
+
+	@Override
+	int nameId(int node) {
+		return names[node];
+	}
+
+	@Override
+	String name(int nameId) {
+		return nameTable[nameId];
+	}
+
+	/**
+	 * Number of names of the names table
+	 */
+	int names() {
+		return nameTable.length;
+	}
+
+	/**
+	 * Write this snapshot to a file, that can be memory mapped by {@link MappedGraph#open(Path)}.<br/>
+	 * Values of primitive types, strings, dates and primitive arrays are written, other values are represented only by
+	 * their nodes.
+	 * @param file The file, replaced if it exists
+	 * @throws IOException If the file can not be written
+	 */
+	public void writeTo(Path file) throws IOException {
+		MappedGraph.write(this, file);
+	}
+
+}
@@ -0,0 +1,31 @@
+package br.com.binarti.sjog;
+
+/**
+ * How an object graph handles an object reachable from more than one path, like shared objects and
+ * bidirectional relationships.<br/>
+ * Objects are compared by identity. Primitive values are never tracked.
+ * 
+ * @author francofabio
+ *
+ */
+public enum IdentityMode {
+
+	/**
+	 * Objects are expanded once for each path, cycles are expanded without bound. This is the default mode.
+	 */
+	NONE,
+	
+	/**
+	 * Only the first node of an object is expanded. The other nodes of the same object with the same include/exclude
+	 * rule are back references, without children, see {@link Node#getReference()}. Cycles stop at the back reference.
+	 */
+	REFERENCE,
+	
+	/**
+	 * Only the first node of an object is expanded. The other nodes of the same object with the same include/exclude
+	 * rule share its children.
+	 * Nodes are created once for each object, so cycles can be navigated without creating new nodes.
+	 */
+	SHARE
+	
+}
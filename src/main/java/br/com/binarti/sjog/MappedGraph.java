@@ -0,0 +1,544 @@
+package br.com.binarti.sjog;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Object graph read from a memory mapped file written by {@link GraphSnapshot#writeTo(Path)}.<br/>
+ * The nodes are read from the file when navigated, nothing is loaded into the Java heap when the file is opened,
+ * and the same file can be mapped by many processes. A mapped graph can be read by many threads.<br/>
+ * Only values of primitive types, their wrappers, strings, dates and primitive arrays are stored in the file.
+ * Other values, like objects and collections, are represented only by their nodes.<br/>
+ * The file has a header, the columns of the nodes, the arrays and the strings table:
+ * <ul>
+ * <li>Header: magic number, version, number of nodes, number of strings and size of the arrays in bytes</li>
+ * <li>Parent, name, flags, first child, next sibling and reference columns, an <code>int</code> for each node</li>
+ * <li>Value column, a <code>long</code> for each node: the bits of the primitive value, the number of the string,
+ * the time of the date or the offset of the array. The type of the value, and the type of the items of arrays,
+ * are stored with the flags of the node</li>
+ * <li>Arrays: the length and the items of each primitive array</li>
+ * <li>Strings table: offsets of the strings, and the UTF-8 bytes of the names and the string values</li>
+ * </ul>
+ *
+ * @author francofabio
+ *
+ */
+public final class MappedGraph extends FlatGraph {
+
+	private static final int MAGIC = 0x534A4F47;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 20;
+	private static final int INT_COLUMNS = 6;
+
+	//Types of the values, stored in the second byte of the flags. The type of the items of arrays is in the third byte
+	private static final int TYPE_SHIFT = 8;
+	private static final int ITEM_TYPE_SHIFT = 16;
+	private static final int TYPE_MASK = 0xFF;
+	private static final int NULL = 0;
+	private static final int OBJECT = 1;
+	private static final int BOOLEAN = 2;
+	private static final int BYTE = 3;
+	private static final int SHORT = 4;
+	private static final int CHARACTER = 5;
+	private static final int INTEGER = 6;
+	private static final int LONG = 7;
+	private static final int FLOAT = 8;
+	private static final int DOUBLE = 9;
+	private static final int STRING = 10;
+	private static final int DATE = 11;
+	private static final int ARRAY = 12;
+
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int parents;
+	private final int names;
+	private final int flags;
+	private final int firstChildren;
+	private final int nextSiblings;
+	private final int references;
+	private final int values;
+	private final int arrays;
+	private final int stringOffsets;
+	private final int strings;
+
+	private MappedGraph(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.size = buffer.getInt(8);
+		this.parents = HEADER_SIZE;
+		this.names = parents + 4 * size;
+		this.flags = names + 4 * size;
+		this.firstChildren = flags + 4 * size;
+		this.nextSiblings = firstChildren + 4 * size;
+		this.references = nextSiblings + 4 * size;
+		this.values = references + 4 * size;
+		this.arrays = values + 8 * size;
+		this.stringOffsets = arrays + buffer.getInt(16);
+		this.strings = stringOffsets + 4 * (buffer.getInt(12) + 1);
+	}
+
+	/**
+	 * Map a graph file
+	 * @param file File written by {@link GraphSnapshot#writeTo(Path)}
+	 * @return The mapped graph
+	 * @throws IOException If the file can not be read or is not a graph file
+	 */
+	public static MappedGraph open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Invalid graph file " + file);
+			}
+			//the mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || !isComplete(buffer)) {
+				throw new IOException("Invalid graph file " + file);
+			}
+			return new MappedGraph(buffer);
+		}
+	}
+
+	/**
+	 * Check the counts of the header against the size of the file, so truncated files are not mapped
+	 */
+	private static boolean isComplete(ByteBuffer buffer) {
+		int size = buffer.getInt(8);
+		int stringCount = buffer.getInt(12);
+		int arrayBytes = buffer.getInt(16);
+		if (size < 0 || stringCount < 0 || arrayBytes < 0) {
+			return false;
+		}
+		long stringOffsets = HEADER_SIZE + (4L * INT_COLUMNS + 8) * size + arrayBytes;
+		long strings = stringOffsets + 4L * (stringCount + 1);
+		if (strings > buffer.capacity()) {
+			return false;
+		}
+		int stringBytes = buffer.getInt((int) strings - 4);
+		return stringBytes >= 0 && strings + stringBytes == buffer.capacity();
+	}
+
+	/**
+	 * Write a snapshot to a graph file
+	 */
+	static void write(GraphSnapshot snapshot, Path file) throws IOException {
+		int size = snapshot.size();
+		//names keep their numbers, string values are added after the names
+		List<byte[]> strings = new ArrayList<>();
+		Map<String, Integer> stringIds = new HashMap<>();
+		for (int i = 0; i < snapshot.names(); i++) {
+			stringId(snapshot.name(i), strings, stringIds);
+		}
+		long stringBytes = 0;
+		for (int i = 0; i < size; i++) {
+			if (snapshot.getValue(i) instanceof String) {
+				stringId((String) snapshot.getValue(i), strings, stringIds);
+			}
+		}
+		for (byte[] string : strings) {
+			stringBytes += string.length;
+		}
+		long arrayBytes = 0;
+		for (int i = 0; i < size; i++) {
+			Object value = snapshot.getValue(i);
+			if (PrimitiveValues.isPrimitiveArray(value)) {
+				arrayBytes += 4 + (long) PrimitiveValues.length(value) * itemSize(itemType(value));
+			}
+		}
+		long length = HEADER_SIZE + (4L * INT_COLUMNS + 8) * size + arrayBytes + 4L * (strings.size() + 1) + stringBytes;
+		if (length > Integer.MAX_VALUE) {
+			throw new ObjectGraphException("Graph with " + size + " nodes is too large to be written to a file");
+		}
+		//the file is replaced only when complete, so the processes that mapped the old file can still read it
+		Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, length);
+				buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(strings.size()).putInt((int) arrayBytes);
+				for (int i = 0; i < size; i++) {
+					buffer.putInt(snapshot.getParent(i));
+				}
+				for (int i = 0; i < size; i++) {
+					buffer.putInt(snapshot.nameId(i));
+				}
+				for (int i = 0; i < size; i++) {
+					Object value = snapshot.getValue(i);
+					int type = type(value);
+					int itemType = (type == ARRAY) ? itemType(value) << ITEM_TYPE_SHIFT : 0;
+					buffer.putInt(snapshot.flags(i) | (type << TYPE_SHIFT) | itemType);
+				}
+				for (int i = 0; i < size; i++) {
+					buffer.putInt(snapshot.getFirstChild(i));
+				}
+				for (int i = 0; i < size; i++) {
+					buffer.putInt(snapshot.getNextSibling(i));
+				}
+				for (int i = 0; i < size; i++) {
+					buffer.putInt(snapshot.getReference(i));
+				}
+				int arrayOffset = 0;
+				for (int i = 0; i < size; i++) {
+					Object value = snapshot.getValue(i);
+					if (type(value) == ARRAY) {
+						buffer.putLong(arrayOffset);
+						arrayOffset += 4 + PrimitiveValues.length(value) * itemSize(itemType(value));
+					} else {
+						buffer.putLong(bits(value, stringIds));
+					}
+				}
+				for (int i = 0; i < size; i++) {
+					Object value = snapshot.getValue(i);
+					if (type(value) == ARRAY) {
+						putArray(buffer, value);
+					}
+				}
+				int offset = 0;
+				for (byte[] string : strings) {
+					buffer.putInt(offset);
+					offset += string.length;
+				}
+				buffer.putInt(offset);
+				for (byte[] string : strings) {
+					buffer.put(string);
+				}
+				buffer.force();
+			}
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static int stringId(String string, List<byte[]> strings, Map<String, Integer> stringIds) {
+		Integer id = stringIds.get(string);
+		if (id == null) {
+			id = strings.size();
+			stringIds.put(string, id);
+			strings.add(string.getBytes(UTF_8));
+		}
+		return id;
+	}
+
+	private static int type(Object value) {
+		if (value == null) {
+			return NULL;
+		} else if (value instanceof Boolean) {
+			return BOOLEAN;
+		} else if (value instanceof Byte) {
+			return BYTE;
+		} else if (value instanceof Short) {
+			return SHORT;
+		} else if (value instanceof Character) {
+			return CHARACTER;
+		} else if (value instanceof Integer) {
+			return INTEGER;
+		} else if (value instanceof Long) {
+			return LONG;
+		} else if (value instanceof Float) {
+			return FLOAT;
+		} else if (value instanceof Double) {
+			return DOUBLE;
+		} else if (value instanceof String) {
+			return STRING;
+		} else if (value instanceof Date) {
+			return DATE;
+		} else if (PrimitiveValues.isPrimitiveArray(value)) {
+			return ARRAY;
+		}
+		return OBJECT;
+	}
+
+	private static int itemType(Object array) {
+		Class<?> type = array.getClass().getComponentType();
+		if (type == boolean.class) {
+			return BOOLEAN;
+		} else if (type == byte.class) {
+			return BYTE;
+		} else if (type == short.class) {
+			return SHORT;
+		} else if (type == char.class) {
+			return CHARACTER;
+		} else if (type == int.class) {
+			return INTEGER;
+		} else if (type == long.class) {
+			return LONG;
+		} else if (type == float.class) {
+			return FLOAT;
+		}
+		return DOUBLE;
+	}
+
+	/**
+	 * Number of bytes of an item of a primitive array
+	 */
+	private static int itemSize(int itemType) {
+		switch (itemType) {
+		case BOOLEAN:
+		case BYTE:
+			return 1;
+		case SHORT:
+		case CHARACTER:
+			return 2;
+		case INTEGER:
+		case FLOAT:
+			return 4;
+		default:
+			return 8;
+		}
+	}
+
+	/**
+	 * Write the length and the items of a primitive array
+	 */
+	private static void putArray(ByteBuffer buffer, Object array) {
+		int length = PrimitiveValues.length(array);
+		buffer.putInt(length);
+		switch (itemType(array)) {
+		case BOOLEAN:
+			for (boolean item : (boolean[]) array) {
+				buffer.put((byte) (item ? 1 : 0));
+			}
+			break;
+		case BYTE:
+			buffer.put((byte[]) array);
+			break;
+		case SHORT:
+			for (short item : (short[]) array) {
+				buffer.putShort(item);
+			}
+			break;
+		case CHARACTER:
+			for (char item : (char[]) array) {
+				buffer.putChar(item);
+			}
+			break;
+		case INTEGER:
+			for (int item : (int[]) array) {
+				buffer.putInt(item);
+			}
+			break;
+		case LONG:
+			for (long item : (long[]) array) {
+				buffer.putLong(item);
+			}
+			break;
+		case FLOAT:
+			for (float item : (float[]) array) {
+				buffer.putFloat(item);
+			}
+			break;
+		default:
+			for (double item : (double[]) array) {
+				buffer.putDouble(item);
+			}
+		}
+	}
+
+	private static long bits(Object value, Map<String, Integer> stringIds) {
+		switch (type(value)) {
+		case BOOLEAN:
+			return ((Boolean) value) ? 1 : 0;
+		case CHARACTER:
+			return (Character) value;
+		case BYTE:
+		case SHORT:
+		case INTEGER:
+		case LONG:
+			return ((Number) value).longValue();
+		case FLOAT:
+			return Float.floatToRawIntBits((Float) value);
+		case DOUBLE:
+			return Double.doubleToRawLongBits((Double) value);
+		case STRING:
+			return stringIds.get(value);
+		case DATE:
+			return ((Date) value).getTime();
+		default:
+			return 0;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getParent(int node) {
+		return buffer.getInt(parents + 4 * node);
+	}
+
+	@Override
+	public int getFirstChild(int node) {
+		return buffer.getInt(firstChildren + 4 * node);
+	}
+
+	@Override
+	public int getNextSibling(int node) {
+		return buffer.getInt(nextSiblings + 4 * node);
+	}
+
+	@Override
+	public int getReference(int node) {
+		return buffer.getInt(references + 4 * node);
+	}
+
+	/**
+	 * Get the value of a node.<br/>
+	 * Values that are not stored in the file, like objects and collections, are read as <code>null</code>.
+	 * Dates and primitive arrays are read as new objects.
+	 */
+	@Override
+	public Object getValue(int node) {
+		long bits = buffer.getLong(values + 8 * node);
+		int flags = flags(node);
+		switch ((flags >>> TYPE_SHIFT) & TYPE_MASK) {
+		case BOOLEAN:
+			return bits != 0;
+		case BYTE:
+			return (byte) bits;
+		case SHORT:
+			return (short) bits;
+		case CHARACTER:
+			return (char) bits;
+		case INTEGER:
+			return (int) bits;
+		case LONG:
+			return bits;
+		case FLOAT:
+			return Float.intBitsToFloat((int) bits);
+		case DOUBLE:
+			return Double.longBitsToDouble(bits);
+		case STRING:
+			return name((int) bits);
+		case DATE:
+			return new Date(bits);
+		case ARRAY:
+			return array((flags >>> ITEM_TYPE_SHIFT) & TYPE_MASK, arrays + (int) bits);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Read a primitive array
+	 * @param itemType Type of the items
+	 * @param offset Position of the length of the array, followed by the items
+	 */
+	private Object array(int itemType, int offset) {
+		int length = buffer.getInt(offset);
+		int items = offset + 4;
+		switch (itemType) {
+		case BOOLEAN:
+			boolean[] booleans = new boolean[length];
+			for (int i = 0; i < length; i++) {
+				booleans[i] = buffer.get(items + i) != 0;
+			}
+			return booleans;
+		case BYTE:
+			byte[] bytes = new byte[length];
+			ByteBuffer array = buffer.duplicate();
+			((Buffer) array).position(items);
+			array.get(bytes);
+			return bytes;
+		case SHORT:
+			short[] shorts = new short[length];
+			for (int i = 0; i < length; i++) {
+				shorts[i] = buffer.getShort(items + 2 * i);
+			}
+			return shorts;
+		case CHARACTER:
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++) {
+				chars[i] = buffer.getChar(items + 2 * i);
+			}
+			return chars;
+		case INTEGER:
+			int[] ints = new int[length];
+			for (int i = 0; i < length; i++) {
+				ints[i] = buffer.getInt(items + 4 * i);
+			}
+			return ints;
+		case LONG:
+			long[] longs = new long[length];
+			for (int i = 0; i < length; i++) {
+				longs[i] = buffer.getLong(items + 8 * i);
+			}
+			return longs;
+		case FLOAT:
+			float[] floats = new float[length];
+			for (int i = 0; i < length; i++) {
+				floats[i] = buffer.getFloat(items + 4 * i);
+			}
+			return floats;
+		default:
+			double[] doubles = new double[length];
+			for (int i = 0; i < length; i++) {
+				doubles[i] = buffer.getDouble(items + 8 * i);
+			}
+			return doubles;
+		}
+	}
+
+	@Override
+	boolean isNull(int node) {
+		return ((flags(node) >>> TYPE_SHIFT) & TYPE_MASK) == NULL;
+	}
+
+	@Override
+	int flags(int node) {
+		return buffer.getInt(flags + 4 * node);
+	}
+
+	@Override
+	int nameId(int node) {
+		return buffer.getInt(names + 4 * node);
+	}
+
+	@Override
+	String name(int nameId) {
+		int start = buffer.getInt(stringOffsets + 4 * nameId);
+		byte[] bytes = new byte[buffer.getInt(stringOffsets + 4 * nameId + 4) - start];
+		//the position of the shared buffer is not changed, so many threads can read it
+		ByteBuffer string = buffer.duplicate();
+		((Buffer) string).position(strings + start);
+		string.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Compare a name with the bytes of the file, decoding only names with characters that are not ASCII
+	 */
+	@Override
+	boolean nameEquals(int nameId, String name) {
+		int start = strings + buffer.getInt(stringOffsets + 4 * nameId);
+		int length = strings + buffer.getInt(stringOffsets + 4 * nameId + 4) - start;
+		if (length < name.length()) {
+			//UTF-8 encodes each character with at least one byte
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			byte b = buffer.get(start + i);
+			if (b < 0) {
+				return name(nameId).equals(name);
+			}
+			if (i >= name.length() || b != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -1,62 +1,110 @@
 package br.com.binarti.sjog;
 
-import java.lang.reflect.Method;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.StringJoiner;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
- * Represents a node of the tree graph
- * 
+ * Represents a node of the tree graph.<br/>
+ * Nodes can be read by many threads. Values and children are loaded on demand and published once, without locks:
+ * threads racing to load the same node may load it more than once, but all of them use the first published result.<br/>
+ * Nodes are compact: the name and the rule of a property node are shared with the expansion plan, the name of
+ * an item is its index, leaves have no children list, and paths are computed on demand from the parent.
+ *
  * @author Fabio Franco
  */
 public class Node {
 
 	static final String ROOT_NODE = "$root";
-	
-	private String name;
-	private NodePath path;
-	private List<Node> children;
-	private boolean expanded;
-	private Object value;
-	private ObjectGraphContext context;
-	private boolean collection;
-	private Node parent;
-	private boolean primitive;
-	
+
+	//Value of a property whose getter has not been invoked yet
+	private static final Object UNLOADED = new Object();
+	private static final ChildList EMPTY = new FixedChildren(new Node[0], false, true);
+
+	//Flags of the node
+	private static final int COLLECTION = 1;
+	private static final int PRIMITIVE = 1 << 1;
+	private static final int SORTED_BY_NAME = 1 << 2;
+
+	private static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+	private static final AtomicReferenceFieldUpdater<Node, ChildList> CHILDREN =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, ChildList.class, "children");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Node, ConcurrentHashMap> CHILDREN_BY_NAME =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, ConcurrentHashMap.class, "childrenByName");
+
+	private final Node parent;
+	//What the node is in its parent: the expansion step of a property, the name of a map entry, or the name and
+	//path of a node created by the public constructors. Null for collection items
+	private final Object segment;
+	//Index of a collection item, -1 for other nodes
+	private final int index;
+	//Identities, budget and context shared by the nodes of the graph
+	private final ExpansionState state;
+	private volatile Object value;
+	//Collection flag when the value is null, primitive flag and sort flag
+	private volatile int flags;
+	//Children of the node, published once when the node is expanded
+	private volatile ChildList children;
+	//Children by name resolved before expansion, and entries of map nodes
+	private volatile ConcurrentHashMap<String, Node> childrenByName;
+
 	/**
 	 * Create a node
 	 * @param name Node name
 	 */
 	public Node(String name, Node parent, NodePath path) {
-		if (path == null) {
-			throw new NullPointerException();
-		}
-		this.name = name;
-		this.parent = parent;
-		this.path = path;
-		this.children = new ArrayList<>();
-		this.expanded = false;
-		this.primitive = false;
+		this(parent, new NamedPath(name, path), -1, null, (parent == null) ? ExpansionState.create(null) : parent.state, 0);
 	}
-	
+
 	public Node(String name, Node parent, NodePath path, Object value, ObjectGraphContext context, boolean collection) {
-		this(name, parent, path);
+		this(parent, new NamedPath(name, path), -1, value, (parent == null) ? ExpansionState.create(context) : parent.state,
+				collection ? COLLECTION : 0);
+	}
+
+	/**
+	 * Create the root node of an object graph
+	 */
+	Node(Object value, ExpansionState state, boolean collection) {
+		this(null, new NamedPath(ROOT_NODE, NodePath.create(ROOT_NODE)), -1, value, state, collection ? COLLECTION : 0);
+	}
+
+	private Node(Node parent, Object segment, int index, Object value, ExpansionState state, int flags) {
+		this.parent = parent;
+		this.segment = segment;
+		this.index = index;
 		this.value = value;
-		this.context = context;
-		this.collection = collection;
+		this.state = state;
+		if (parent != null && parent.is(SORTED_BY_NAME)) {
+			flags |= SORTED_BY_NAME;
+		}
+		this.flags = flags;
 	}
-	
+
 	/**
 	 * Get name of the node
-	 * @return Name of the node, generally means a property 
+	 * @return Name of the node, generally means a property
 	 */
 	public String getName() {
-		return name;
+		if (index >= 0) {
+			return NodePath.indexNode(index);
+		}
+		Object segment = this.segment;
+		if (segment instanceof ExpansionPlan.Step) {
+			return ((ExpansionPlan.Step) segment).getProperty().getName();
+		}
+		return (segment instanceof String) ? (String) segment : ((NamedPath) segment).name;
 	}
-	
+
 	/**
 	 * Get parent of this node.<br/>
 	 * If parent is null indicates that node is root of tree
@@ -65,13 +113,21 @@ public class Node {
 	public Node getParent() {
 		return parent;
 	}
-	
+
 	/**
-	 * Get the path of the node
+	 * Get the path of the node.<br/>
+	 * The path is computed from the path of the parent.
 	 * @return Path of the node
 	 */
 	public NodePath getPath() {
-		return path;
+		if (segment instanceof NamedPath) {
+			return ((NamedPath) segment).path;
+		}
+		NodePath parentPath = parent.getPath();
+		if (segment instanceof ExpansionPlan.Step) {
+			return parentPath.child(getName());
+		}
+		return NodePath.create(parentPath.getPath() + getName());
 	}
 
 	/**
@@ -79,39 +135,109 @@ public class Node {
 	 * @return Children of the node
 	 */
 	public List<Node> getChildren() {
-		expand();
-		return Collections.unmodifiableList(children);
+		return expand();
 	}
-	
+
 	/**
 	 * Determine if this node refer a collection
 	 * @return <code>true</code> if this node refer a collection, <code>false</code> otherwise.
 	 */
 	public boolean isCollection() {
-		return collection;
+		Object v = loadValue();
+		return (v == null) ? is(COLLECTION) : context().isCollection(v.getClass());
 	}
-	
+
 	/**
 	 * Determine if this node is expanded
 	 * @return <code>true</code> if node is expanded or <code>false</code> otherwise.
 	 */
 	public boolean isExpanded() {
-		return expanded;
+		return children != null;
 	}
-	
+
 	/**
 	 * Determine if this node represents an primitive data
 	 */
 	public boolean isPrimitive() {
-		return primitive;
+		return is(PRIMITIVE);
+	}
+
+	private boolean is(int flag) {
+		return (flags & flag) != 0;
+	}
+
+	private ObjectGraphContext context() {
+		return state.context();
 	}
-	
+
 	/**
-	 * Get node value
+	 * Get node value.<br/>
+	 * The getter of the property is invoked on the first call of this method, {@link #isCollection()} or
+	 * {@link #getChildren()}, so listing the children of a node does not load their values.
 	 * @return Node value
 	 */
 	public Object getValue() {
-		return value;
+		return loadValue();
+	}
+
+	/**
+	 * Invoke the getter of the property represented by this node, if it was not invoked yet
+	 * @return The value of the node
+	 */
+	private Object loadValue() {
+		Object v = value;
+		if (v == UNLOADED) {
+			v = Reflect.invoke(((ExpansionPlan.Step) segment).getProperty().getAccessor(), parent.loadValue(), this);
+			if (!VALUE.compareAndSet(this, UNLOADED, v)) {
+				v = value;
+			}
+		}
+		return v;
+	}
+
+	/**
+	 * Get the node of the first occurrence of the value of this node in the graph.<br/>
+	 * Available only when identities are tracked, see {@link IdentityMode}. The node of the first occurrence
+	 * is the first node of the value to be expanded or navigated. Only nodes with the same include/exclude
+	 * rule are references, so the identity mode does not change the properties that can be read.
+	 * @return The node of the first occurrence, or <code>null</code> if this node is the first occurrence
+	 */
+	public Node getReference() {
+		Node first = identity();
+		return (first == this) ? null : first;
+	}
+
+	/**
+	 * Determine if this node refers to a value already present in the graph
+	 * @see #getReference()
+	 */
+	public boolean isReference() {
+		return getReference() != null;
+	}
+
+	/**
+	 * Determine if children of this node were omitted because of the limits of the expansion.<br/>
+	 * The node is expanded, if it was not expanded yet.
+	 * @return <code>true</code> if the node has less children than its value
+	 * @see ObjectGraphBuilder#maxDepth(int)
+	 * @see ObjectGraphBuilder#maxNodes(int)
+	 * @see ObjectGraphBuilder#maxCollectionItems(int)
+	 * @see ObjectGraphBuilder#timeout(long)
+	 */
+	public boolean isTruncated() {
+		return expand().isTruncated();
+	}
+
+	/**
+	 * Register the value of this node in the identity map of the graph
+	 * @return The node of the first occurrence of the value, or this node
+	 */
+	private Node identity() {
+		if (!state.tracksIdentities()) {
+			return this;
+		}
+		Object v = loadValue();
+		return (v == null || is(PRIMITIVE)) ? this : state.register(v, rule(), this);
 	}
 
 	public Node getRoot() {
@@ -121,11 +247,11 @@ public class Node {
 		}
 		return root;
 	}
-	
+
 	private boolean isRootPath(NodePath path) {
 		return (path.getPath().equals(ROOT_NODE));
 	}
-	
+
 	/**
 	 * Get a node child by name or full path
 	 * @param name Name or full path of the node
@@ -137,9 +263,7 @@ public class Node {
 			return getRoot();
 		}
 		if (path.isRoot()) {
-			return getChildren().stream().filter(node -> {
-				return node.getName() != null && node.getName().equals(name);
-			}).findFirst().orElse(null);
+			return indexedChild(name, path);
 		} else {
 			Iterator<NodePath> it = path.iterator();
 			Node parent = this;
@@ -149,7 +273,7 @@ public class Node {
 				if (isRootPath(nodePath)) {
 					node = getRoot();
 				} else {
-					node = parent.getChild(nodePath.getNode());
+					node = parent.indexedChild(nodePath.getNode(), nodePath);
 				}
 				if (node == null) {
 					break;
@@ -159,118 +283,842 @@ public class Node {
 			return node;
 		}
 	}
-	
-	private static void expand(Object value, Node node, ObjectGraphContext context) {
-		if (value != null && context.getPredicate().hasChild(value.getClass())) {
-			Reflect.of(value.getClass()).getters().forEach(m -> {
-				boolean isPrimitive = context.getPredicate().isPrimitive(m.getReturnType());
-				boolean isRootChild = (node.name != null && node.name.equals(ROOT_NODE));
-				String propertyName = Reflect.propertyName(m);
-				StringJoiner fullPath = new StringJoiner(".");
-				fullPath.add(node.path.getPath());
-				fullPath.add(propertyName);
-				NodePath path  = NodePath.create(fullPath.toString());
-				boolean excluded = context.excluded(path.getPath(), isPrimitive, isRootChild);
-				if (!excluded) {
-					boolean included = context.included(path.getPath(), isPrimitive);
-					if (included) {
-						Node childNode = new Node(propertyName, node, path, null, context, false);
-						NodeValue nodeValue = getValue(childNode, value);
-						childNode.value = nodeValue.getValue();
-						childNode.collection = context.getPredicate().isCollection(nodeValue.getType());
-						childNode.primitive = isPrimitive;
-						node.children.add(childNode);
-					}
+
+	/**
+	 * Find a direct child of the expanded node
+	 * @param name Name of the child
+	 * @param path Path of the child, used to get the collection index
+	 * @return The child node, or <code>null</code> if not found
+	 */
+	private Node indexedChild(String name, NodePath path) {
+		Node first = identity();
+		if (first != this) {
+			return (context().getIdentityMode() == IdentityMode.SHARE) ? first.indexedChild(name, path) : null;
+		}
+		if (path.isMapEntry()) {
+			return mapEntry(path.getKey());
+		}
+		if (path.isCollectionItem() && PrimitiveValues.isPrimitiveArray(loadValue())) {
+			return primitiveItem(path.getIndex());
+		}
+		ChildList expansion = expand();
+		if (expansion instanceof Items) {
+			int index = path.getIndex();
+			if (!path.isCollectionItem() || index < 0 || index >= expansion.size()) {
+				return null;
+			}
+			Node item = expansion.get(index);
+			return item.getName().equals(name) ? item : null;
+		}
+		return namedChild(name);
+	}
+
+	private Node createChild(ExpansionPlan.Step step) {
+		return new Node(this, step, -1, UNLOADED, state,
+				(step.isCollectionType() ? COLLECTION : 0) | (step.isPrimitive() ? PRIMITIVE : 0));
+	}
+
+	private Node createItem(int index, Object itemValue) {
+		return new Node(this, null, index, itemValue, state, valueFlags(itemValue));
+	}
+
+	private Node createEntry(String key, Object entryValue) {
+		return new Node(this, NodePath.keyNode(key), -1, entryValue, state, valueFlags(entryValue));
+	}
+
+	private int valueFlags(Object value) {
+		if (value == null) {
+			return 0;
+		}
+		ObjectGraphContext context = context();
+		return (context.isCollection(value.getClass()) ? COLLECTION : 0) | (context.getPredicate().isPrimitive(value.getClass()) ? PRIMITIVE : 0);
+	}
+
+	/**
+	 * Get the node of a map entry, looking up the key with {@link ObjectGraphHelper#findEntry(Map, String)}
+	 * @param key Key of the entry
+	 * @return The entry node, or <code>null</code> if the value is not a map or has no entry with the key
+	 */
+	private Node mapEntry(String key) {
+		Object v = loadValue();
+		if (!(v instanceof Map)) {
+			return null;
+		}
+		String entryName = NodePath.keyNode(key);
+		Node entry = resolvedChild(entryName);
+		ChildList expansion = children;
+		if (entry == null && (expansion == null || expansion.isTruncated())) {
+			Entry<?, ?> mapEntry = ObjectGraphHelper.findEntry((Map<?, ?>) v, key);
+			if (mapEntry == null) {
+				return null;
+			}
+			entry = indexChild(createEntry(key, mapEntry.getValue()));
+		}
+		return entry;
+	}
+
+	/**
+	 * Get the node of an item of a primitive array.<br/>
+	 * Primitive arrays are leaves of the graph, their items are not children, but can be accessed by index.
+	 */
+	private Node primitiveItem(int index) {
+		Object v = loadValue();
+		if (index < 0 || index >= PrimitiveValues.length(v)) {
+			return null;
+		}
+		String itemName = NodePath.indexNode(index);
+		Node item = resolvedChild(itemName);
+		if (item == null) {
+			item = indexChild(new Node(this, null, index, PrimitiveValues.get(v, index), state, PRIMITIVE));
+		}
+		return item;
+	}
+
+	/**
+	 * Get the expansion step of a child property that was not resolved yet, so its value can be read
+	 * without creating the child node
+	 * @param childPath Path of the child
+	 * @return The step, or <code>null</code> if the child is resolved, is not a property, or is not included
+	 */
+	ExpansionPlan.Step unresolvedStep(NodePath childPath) {
+		Node first = identity();
+		if (first != this) {
+			return first.unresolvedStep(childPath);
+		}
+		Object v = loadValue();
+		if (children != null || v == null || childPath.isCollectionItem() || childPath.isMapEntry()
+				|| resolvedChild(childPath.getNode()) != null || v instanceof Map
+				|| context().isCollection(v.getClass())) {
+			return null;
+		}
+		return context().plan(rule(), isRootNode(), v.getClass()).step(childPath.getNode());
+	}
+
+	private boolean isRootNode() {
+		return segment instanceof NamedPath && ROOT_NODE.equals(((NamedPath) segment).name);
+	}
+
+	/**
+	 * Find a child indexed by name: resolved before the expansion, or created for a map entry
+	 */
+	private Node resolvedChild(String childName) {
+		Map<String, Node> byName = childrenByName;
+		return (byName == null) ? null : byName.get(childName);
+	}
+
+	/**
+	 * Find a child by name, indexed or created by the expansion of an object.<br/>
+	 * Children of objects in the order of the plan are found by the position of the step of the plan.
+	 */
+	private Node namedChild(String childName) {
+		Node child = resolvedChild(childName);
+		ChildList expansion = children;
+		if (child == null && expansion instanceof FixedChildren) {
+			FixedChildren fixed = (FixedChildren) expansion;
+			Object v = value;
+			if (!fixed.sorted && !fixed.truncated && fixed.size() > 0 && v != null && !(v instanceof Map)) {
+				ExpansionPlan plan = context().plan(rule(), isRootNode(), v.getClass());
+				//the plan of the context may have been compiled again after the expansion
+				if (plan.size() == fixed.size() && fixed.get(0).segment == plan.step(0)) {
+					ExpansionPlan.Step step = plan.step(childName);
+					return (step == null) ? null : fixed.get(step.getPosition());
 				}
-			});
+			}
+			child = fixed.find(childName);
 		}
-		node.expanded = true;
+		return child;
 	}
-	
-	@SuppressWarnings("rawtypes")
-	private static NodeValue getValue(Node node, Object parent) {
-		Method method = Reflect.of(parent.getClass()).getter(node.getName());
-		if (method == null) {
-			throw new ObjectGraphException("Property " + node.getName() + " not found in class " + parent.getClass() + "[" + parent + "]");
-		}
-		Object value = Reflect.invoke(method, parent, node.getPath().getPath());
-		Class type = (value == null) ? method.getReturnType() : value.getClass();
-		return new NodeValue(type, value);
-	}
-	
-	private void expand() {
-		if (!expanded) {
-			if (value != null && context.getPredicate().isCollection(value.getClass())) {
-				expandAsCollection();
-			} else {
-				expandAsObject();
-			}
-			expanded = true;
-		}
-	}
-	
-	private void expandAsObject() {
-		expand(value, this, context);
-	}
-	
-	private void expandAsCollection() {
-		if (value != null && context.getPredicate().isCollection(value.getClass())) {
-			//When value is a collection. Expand all items in collection
-			if (List.class.isAssignableFrom(value.getClass()) || value.getClass().isArray()) {
-				int size = ObjectGraphHelper.getCollectionSize(value);
-				for (int i = 0; i < size; i++) {
-					Object itemValue = ObjectGraphHelper.getCollectonItem(value, i);
-					boolean isCollection = (itemValue == null) ? false : context.getPredicate().isCollection(itemValue.getClass());
-					String itemPath = "["+i+"]";
-					String fullPath = path.getPath() + itemPath;
-					Node itemNode = new Node(itemPath, this, NodePath.create(fullPath), itemValue, context, isCollection);
-					if (itemValue != null) {
-						itemNode.primitive = context.getPredicate().isPrimitive(itemValue.getClass());
-					}
-					this.children.add(itemNode);
-					expand(itemValue, itemNode, context);
+
+	/**
+	 * Index a child by name
+	 * @return The indexed child, which is the node indexed first when threads race to index the same name
+	 */
+	private Node indexChild(Node child) {
+		ConcurrentHashMap<String, Node> byName = childrenByName;
+		if (byName == null) {
+			CHILDREN_BY_NAME.compareAndSet(this, null, new ConcurrentHashMap<String, Node>());
+			byName = childrenByName;
+		}
+		Node indexed = byName.putIfAbsent(child.getName(), child);
+		return (indexed == null) ? child : indexed;
+	}
+
+	/**
+	 * Resolve a single child of this node.<br/>
+	 * If this node is not expanded yet, only the getter of the requested child is invoked, honoring the
+	 * include/exclude rules of the context. The resolved child is reused when the node is expanded.
+	 * @param childPath Path of the child, used to get the child name or collection index
+	 * @return The child node, or <code>null</code> if not found
+	 */
+	Node resolveChild(NodePath childPath) {
+		String childName = childPath.getNode();
+		Node first = identity();
+		if (first != this) {
+			//the value is the same, so the child is resolved in the first occurrence
+			return first.resolveChild(childPath);
+		}
+		Object v = loadValue();
+		ChildList expansion = children;
+		if ((expansion != null && !expansion.isTruncated()) || childPath.isMapEntry()
+				|| (childPath.isCollectionItem() && PrimitiveValues.isPrimitiveArray(v))) {
+			return indexedChild(childName, childPath);
+		}
+		Node child = namedChild(childName);
+		if (child != null || v == null) {
+			return child;
+		}
+		if (context().isCollection(v.getClass())) {
+			//collection items are already created on demand
+			child = indexedChild(childName, childPath);
+			expansion = children;
+			return (child == null && expansion.isTruncated()) ? ((Items) expansion).unlisted(childPath.getIndex()) : child;
+		}
+		ExpansionPlan.Step step = context().plan(rule(), isRootNode(), v.getClass()).step(childName);
+		if (step == null) {
+			return null;
+		}
+		return indexChild(createChild(step));
+	}
+
+	/**
+	 * Compiled include/exclude rule of this node. Items and map entries have the rule of their parent.
+	 */
+	PathRule rule() {
+		Object segment = this.segment;
+		if (segment instanceof ExpansionPlan.Step) {
+			return ((ExpansionPlan.Step) segment).getRule();
+		}
+		if (segment instanceof NamedPath) {
+			NamedPath named = (NamedPath) segment;
+			PathRule rule = named.rule;
+			if (rule == null) {
+				rule = context().rule(named.path.getPath());
+				named.rule = rule;
+			}
+			return rule;
+		}
+		return parent.rule();
+	}
+
+	/**
+	 * Depth of the node, the root node has depth zero
+	 */
+	private int depth() {
+		int depth = 0;
+		for (Node node = parent; node != null; node = node.parent) {
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * Expand the node, if it was not expanded yet.<br/>
+	 * Threads racing to expand the node build their own children, reusing the children already indexed by name,
+	 * and only the children of the first thread are published.
+	 * @return The published children
+	 */
+	private ChildList expand() {
+		ChildList expansion = children;
+		if (expansion != null) {
+			return expansion;
+		}
+		Object v = loadValue();
+		Node first = identity();
+		if (first != this) {
+			expansion = (context().getIdentityMode() == IdentityMode.SHARE) ? first.expand() : EMPTY;
+		} else if (v != null && context().isCollection(v.getClass())) {
+			expansion = expandAsCollection(v);
+		} else if (v instanceof Map) {
+			expansion = expandAsMap((Map<?, ?>) v);
+		} else {
+			expansion = expandAsObject(v);
+		}
+		if (!CHILDREN.compareAndSet(this, null, expansion)) {
+			return children;
+		}
+		if (is(SORTED_BY_NAME)) {
+			//sortByName may have been called while the children were created
+			sortByName();
+			return children;
+		}
+		return expansion;
+	}
+
+	private ChildList expandAsObject(Object v) {
+		if (v == null) {
+			return EMPTY;
+		}
+		ExpansionPlan plan = context().plan(rule(), isRootNode(), v.getClass());
+		if (plan.size() == 0) {
+			//leaves share the same empty children
+			return EMPTY;
+		}
+		int size = reserve(plan.size(), false);
+		Node[] nodes = new Node[size];
+		for (int i = 0; i < size; i++) {
+			ExpansionPlan.Step step = plan.step(i);
+			Node childNode = resolvedChild(step.getProperty().getName());
+			nodes[i] = (childNode == null) ? createChild(step) : childNode;
+		}
+		return sorted(nodes, size < plan.size(), context().isSortedByName());
+	}
+
+	private ChildList expandAsCollection(Object v) {
+		//When value is a collection. Items are created when visited
+		return new Items(context().values(v));
+	}
+
+	private ChildList expandAsMap(Map<?, ?> map) {
+		//When value is a map. Expand all entries, reusing the entries already resolved by key
+		int size = reserve(map.size(), false);
+		Node[] nodes = new Node[size];
+		int count = 0;
+		for (Entry<?, ?> mapEntry : map.entrySet()) {
+			if (count == size) {
+				break;
+			}
+			String key = String.valueOf(mapEntry.getKey());
+			Node entry = resolvedChild(NodePath.keyNode(key));
+			if (entry == null) {
+				entry = indexChild(createEntry(key, mapEntry.getValue()));
+			}
+			nodes[count++] = entry;
+		}
+		return sorted(nodes, size < map.size(), false);
+	}
+
+	/**
+	 * Create the children of an object or map node, sorted by name if required
+	 * @param ordered Determine if the nodes are already ordered by name
+	 */
+	private FixedChildren sorted(Node[] nodes, boolean truncated, boolean ordered) {
+		FixedChildren fixed = new FixedChildren(nodes, truncated, ordered);
+		return (!ordered && (is(SORTED_BY_NAME) || context().isSortedByName())) ? fixed.sortByName() : fixed;
+	}
+
+	/**
+	 * Number of items of the collection of this node, including the items omitted by the limits of the expansion
+	 */
+	int collectionSize() {
+		Node first = identity();
+		if (first != this) {
+			return first.collectionSize();
+		}
+		ChildList expansion = expand();
+		return (expansion instanceof Items) ? ((Items) expansion).values.size() : expansion.size();
+	}
+
+	/**
+	 * Expand this node for the parallel expansion of the graph.<br/>
+	 * Items of collections without random access are created in order, so the collection is traversed once
+	 * before the items are split between threads.
+	 * @return The children of the node
+	 */
+	List<Node> childrenForExpansion() {
+		ChildList expansion = expand();
+		if (expansion instanceof Items && !((Items) expansion).values.isRandomAccess()) {
+			for (int i = 0; i < expansion.size(); i++) {
+				expansion.get(i);
+			}
+		}
+		return expansion;
+	}
+
+	/**
+	 * Reserve the nodes of the children of this node from the budget of the graph
+	 * @param nodes Number of children
+	 * @param collectionItems Determine if the children are items of a collection
+	 * @return Number of children that can be created, less than <code>nodes</code> when the node is truncated
+	 */
+	private int reserve(int nodes, boolean collectionItems) {
+		if (nodes == 0 || !state.isLimited()) {
+			return nodes;
+		}
+		return state.canExpand(state.limitsDepth() ? depth() : 0) ? state.reserve(nodes, collectionItems) : 0;
+	}
+
+	/**
+	 * Get a window of the children of the node.<br/>
+	 * For collections, only the items in the window are created.
+	 * @param offset Index of the first child
+	 * @param limit Maximum number of children
+	 * @return Children of the node in the window
+	 */
+	public List<Node> getChildren(int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("Invalid window offset " + offset + " and limit " + limit);
+		}
+		List<Node> all = getChildren();
+		int from = Math.min(offset, all.size());
+		int to = (int) Math.min((long) from + limit, all.size());
+		return all.subList(from, to);
+	}
+
+	/**
+	 * Discard the item nodes created for a collection node.<br/>
+	 * The items are created again when visited. Nodes of objects are not affected.
+	 */
+	public void discardItems() {
+		ChildList expansion = children;
+		if (expansion instanceof Items && identity() == this) {
+			((Items) expansion).discard();
+		}
+	}
+
+	/**
+	 * Refresh this node and its subtree from the current state of the object.<br/>
+	 * The getters of the loaded properties are invoked again and the values are compared with the previous
+	 * values, by identity, or by equality for primitive values. The subtree of a changed value is discarded and
+	 * expanded again on demand, the nodes of unchanged values are kept with their expansion and refreshed.
+	 * Items of collections and entries of maps are kept while the value at the same index or key is the same,
+	 * and items added to a collection are created when visited.<br/>
+	 * Readers see the previous or the refreshed children of each node, but a node must not be refreshed by
+	 * many threads at the same time. The nodes created again count again to the limits of the expansion.
+	 * @return <code>true</code> if the value of this node or of any node of its subtree changed
+	 */
+	public boolean refresh() {
+		Object previous = value;
+		if (previous == UNLOADED) {
+			//the getter was not invoked, so the current value is read on demand
+			return false;
+		}
+		if (segment instanceof ExpansionPlan.Step) {
+			Object parentValue = parent.loadValue();
+			Object current = (parentValue == null) ? null
+					: Reflect.invoke(((ExpansionPlan.Step) segment).getProperty().getAccessor(), parentValue, this);
+			if (!isSame(previous, current)) {
+				unregister();
+				this.value = current;
+				this.childrenByName = null;
+				this.children = null;
+				return true;
+			}
+		}
+		return refreshChildren();
+	}
+
+	/**
+	 * Determine if the value of this node is the same value read again
+	 */
+	private boolean isSame(Object previous, Object current) {
+		return previous == current || (is(PRIMITIVE) && previous != null && previous.equals(current));
+	}
+
+	private boolean refreshChildren() {
+		if (identity() != this) {
+			//children of a reference are taken again from the first occurrence
+			this.children = null;
+			return false;
+		}
+		Object v = loadValue();
+		if (v == null) {
+			return false;
+		}
+		ChildList expansion = children;
+		if (PrimitiveValues.isPrimitiveArray(v)) {
+			return refreshPrimitiveItems(v);
+		} else if (expansion instanceof Items) {
+			return refreshItems((Items) expansion, v);
+		} else if (v instanceof Map) {
+			return refreshEntries((Map<?, ?>) v);
+		}
+		boolean changed = false;
+		if (expansion instanceof FixedChildren) {
+			for (Node child : ((FixedChildren) expansion).nodes) {
+				changed |= child.refresh();
+			}
+		}
+		Map<String, Node> byName = childrenByName;
+		if (byName != null && (expansion == null || expansion.isTruncated())) {
+			//children resolved by name, that are not listed in the children
+			for (Node child : byName.values()) {
+				changed |= child.refresh();
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Refresh the items of a primitive array, discarding the items whose value changed
+	 */
+	private boolean refreshPrimitiveItems(Object array) {
+		Map<String, Node> byName = childrenByName;
+		boolean changed = false;
+		if (byName != null) {
+			for (Iterator<Node> it = byName.values().iterator(); it.hasNext();) {
+				Node item = it.next();
+				if (item.index >= PrimitiveValues.length(array) || !item.isSame(item.value, PrimitiveValues.get(array, item.index))) {
+					it.remove();
+					changed = true;
 				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Refresh the items of a collection, keeping the created items while the value at the same index is the same
+	 */
+	private boolean refreshItems(Items items, Object collection) {
+		if (items.size < 0) {
+			//items are not counted, so the collection was not read yet
+			return false;
+		}
+		Items refreshed = new Items(context().values(collection));
+		boolean changed = items.size() != refreshed.size();
+		for (Node item : items.created()) {
+			if (item.index < refreshed.size() && item.isSame(item.value, refreshed.values.get(item.index))) {
+				refreshed.put(item);
+				changed |= item.refreshChildren();
 			} else {
-				throw new ObjectGraphException("The collection of type " + value.getClass() + " not supported");
+				item.unregister();
+				changed = true;
+			}
+		}
+		Map<String, Node> unlisted = childrenByName;
+		if (unlisted != null) {
+			for (Node item : unlisted.values()) {
+				item.unregister();
 			}
+			this.childrenByName = null;
 		}
+		this.children = refreshed;
+		return changed;
 	}
-	
+
 	/**
-	 * Sort all nodes recursively by name
+	 * Refresh the entries of a map, keeping the entries while the value of the same key is the same
+	 */
+	private boolean refreshEntries(Map<?, ?> map) {
+		Map<String, Node> byName = childrenByName;
+		if (byName == null) {
+			//an expanded empty map publishes its children without index
+			ChildList expansion = children;
+			if (expansion == null) {
+				return false;
+			}
+			this.children = null;
+			return !expansion.isTruncated() && expansion.size() != map.size();
+		}
+		ConcurrentHashMap<String, Node> retained = new ConcurrentHashMap<>();
+		boolean changed = false;
+		for (Entry<?, ?> mapEntry : map.entrySet()) {
+			String entryName = NodePath.keyNode(String.valueOf(mapEntry.getKey()));
+			Node entry = byName.get(entryName);
+			if (entry != null && entry.isSame(entry.value, mapEntry.getValue())) {
+				retained.put(entryName, entry);
+				changed |= entry.refreshChildren();
+			}
+		}
+		for (Node entry : byName.values()) {
+			if (retained.get(entry.getName()) != entry) {
+				entry.unregister();
+				changed = true;
+			}
+		}
+		ChildList expansion = children;
+		changed |= expansion != null && !expansion.isTruncated() && expansion.size() != map.size();
+		//entries are listed again on demand, reusing the retained entries
+		this.childrenByName = retained;
+		this.children = null;
+		return changed;
+	}
+
+	/**
+	 * Remove this node and the nodes of its subtree from the identity map of the graph, so the values are
+	 * registered again by the nodes that still refer them
+	 */
+	private void unregister() {
+		Object v = value;
+		if (!state.tracksIdentities() || v == UNLOADED || v == null || is(PRIMITIVE) || !state.unregister(v, rule(), this)) {
+			return;
+		}
+		ChildList expansion = children;
+		if (expansion instanceof Items) {
+			for (Node item : ((Items) expansion).created()) {
+				item.unregister();
+			}
+		} else if (expansion instanceof FixedChildren) {
+			for (Node child : ((FixedChildren) expansion).nodes) {
+				child.unregister();
+			}
+		}
+		Map<String, Node> byName = childrenByName;
+		if (byName != null) {
+			for (Node child : byName.values()) {
+				child.unregister();
+			}
+		}
+	}
+
+	/**
+	 * Sort all nodes recursively by name.<br/>
+	 * The sort is lazy: only the nodes already expanded are sorted, the other nodes are sorted when expanded.
+	 * The items of a collection keep the order of the collection.<br/>
+	 * The sorted children are published as a new list, so threads reading the previous list are not affected.
+	 * @see ObjectGraphBuilder#sortByName(boolean)
 	 */
 	public void sortByName() {
-		expand();
-		children.sort((n1, n2) -> n1.getName().compareTo(n2.getName()));
-		for (Node child : children) {
-			child.expand();
-			if (!child.children.isEmpty()) {
+		if (context() != null && context().isSortedByName()) {
+			//children are expanded in order of name
+			return;
+		}
+		//only the sort flag changes after the node is published, so no other flag is lost
+		flags |= SORTED_BY_NAME;
+		ChildList expansion = children;
+		if (expansion == null || identity() != this) {
+			//children of a reference are sorted in the first occurrence
+			return;
+		}
+		if (expansion instanceof Items) {
+			((Items) expansion).sortCreated();
+			return;
+		}
+		FixedChildren fixed = (FixedChildren) expansion;
+		if (!fixed.sorted) {
+			//children are replaced only when sorted, so if the update fails they are already sorted
+			CHILDREN.compareAndSet(this, fixed, fixed.sortByName());
+		}
+		for (Node child : fixed.nodes) {
+			if (!child.is(SORTED_BY_NAME) || child.children != null) {
 				child.sortByName();
 			}
 		}
 	}
-	
+
 	@Override
 	public String toString() {
-		return "Node [" + name + "]";
+		return "Node [" + getName() + "]";
+	}
+
+	/**
+	 * Name and path of a node created by the public constructors
+	 */
+	private static final class NamedPath {
+		private final String name;
+		private final NodePath path;
+		private volatile PathRule rule;
+
+		NamedPath(String name, NodePath path) {
+			if (path == null) {
+				throw new NullPointerException();
+			}
+			this.name = name;
+			this.path = path;
+		}
+	}
+
+	/**
+	 * Children of an expanded node. The list is not modified after published.
+	 */
+	private static abstract class ChildList extends AbstractList<Node> implements RandomAccess {
+
+		/**
+		 * Determine if children were omitted because of the limits of the expansion
+		 */
+		abstract boolean isTruncated();
+	}
+
+	/**
+	 * Children of object and map nodes
+	 */
+	private static final class FixedChildren extends ChildList {
+
+		private final Node[] nodes;
+		private final boolean truncated;
+		private final boolean sorted;
+
+		FixedChildren(Node[] nodes, boolean truncated, boolean sorted) {
+			this.nodes = nodes;
+			this.truncated = truncated;
+			this.sorted = sorted;
+		}
+
+		@Override
+		public Node get(int index) {
+			return nodes[index];
+		}
+
+		@Override
+		public int size() {
+			return nodes.length;
+		}
+
+		@Override
+		boolean isTruncated() {
+			return truncated;
+		}
+
+		/**
+		 * Find a child by name, with a binary search when the children are sorted
+		 */
+		Node find(String name) {
+			if (sorted) {
+				int low = 0;
+				int high = nodes.length - 1;
+				while (low <= high) {
+					int middle = (low + high) >>> 1;
+					int comparison = nodes[middle].getName().compareTo(name);
+					if (comparison == 0) {
+						return nodes[middle];
+					} else if (comparison < 0) {
+						low = middle + 1;
+					} else {
+						high = middle - 1;
+					}
+				}
+				return null;
+			}
+			for (Node node : nodes) {
+				if (node.getName().equals(name)) {
+					return node;
+				}
+			}
+			return null;
+		}
+
+		FixedChildren sortByName() {
+			Node[] sortedNodes = nodes.clone();
+			Arrays.sort(sortedNodes, (n1, n2) -> n1.getName().compareTo(n2.getName()));
+			return new FixedChildren(sortedNodes, truncated, true);
+		}
 	}
-	
-	private static class NodeValue {
-		private Class<?> type;
-		private Object value;
-		
-		public NodeValue(Class<?> type, Object value) {
-			this.type = type;
-			this.value = value;
+
+	/**
+	 * Virtual list of the items of a collection node.<br/>
+	 * Item nodes are created by index when visited and kept in pages, so the memory stays proportional to
+	 * the visited items, not to the size of the collection. The items are counted on first use.
+	 */
+	private final class Items extends ChildList {
+
+		private static final int PAGE_SHIFT = 8;
+		private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+		private final CollectionValues values;
+		private volatile int size = -1;
+		private boolean truncated;
+		private volatile AtomicReferenceArray<AtomicReferenceArray<Node>> pages;
+
+		Items(CollectionValues values) {
+			this.values = values;
+		}
+
+		@Override
+		public Node get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Unreachable collection item: " + getPath().getPath() + NodePath.indexNode(index));
+			}
+			AtomicReferenceArray<AtomicReferenceArray<Node>> pages = this.pages;
+			int pageIndex = index >>> PAGE_SHIFT;
+			AtomicReferenceArray<Node> page = pages.get(pageIndex);
+			if (page == null) {
+				pages.compareAndSet(pageIndex, null, new AtomicReferenceArray<Node>(PAGE_SIZE));
+				page = pages.get(pageIndex);
+			}
+			int slot = index & (PAGE_SIZE - 1);
+			Node item = page.get(slot);
+			if (item == null) {
+				Node created = createItem(index, values.get(index));
+				if (!page.compareAndSet(slot, null, created)) {
+					return page.get(slot);
+				}
+				item = created;
+				//checked after the item is published, so the item is sorted here or by sortCreated
+				if (is(SORTED_BY_NAME) && !item.is(SORTED_BY_NAME)) {
+					item.sortByName();
+				}
+			}
+			return item;
 		}
-		
-		public Class<?> getType() {
-			return type;
+
+		@Override
+		public int size() {
+			int size = this.size;
+			return (size < 0) ? count() : size;
 		}
-		
-		public Object getValue() {
-			return value;
+
+		/**
+		 * Count the items once, reserving them from the budget of the graph
+		 */
+		private int count() {
+			synchronized (values) {
+				if (size < 0) {
+					int available = state.isLimited() ? values.size(state.countedItems()) : values.size();
+					int granted = reserve(available, true);
+					this.truncated = granted < available;
+					this.pages = new AtomicReferenceArray<>((granted + PAGE_SIZE - 1) >>> PAGE_SHIFT);
+					this.size = granted;
+				}
+				return size;
+			}
+		}
+
+		@Override
+		boolean isTruncated() {
+			size();
+			return truncated;
+		}
+
+		/**
+		 * Get an item omitted by the limits of the expansion. The item is indexed by name, but is not listed.
+		 * @return The item, or <code>null</code> if there is no item at the index
+		 */
+		Node unlisted(int index) {
+			if (!values.contains(index)) {
+				return null;
+			}
+			return indexChild(createItem(index, values.get(index)));
+		}
+
+		void sortCreated() {
+			for (Node item : created()) {
+				item.sortByName();
+			}
+		}
+
+		/**
+		 * Item nodes already created, in order of index
+		 */
+		List<Node> created() {
+			List<Node> created = new ArrayList<>();
+			if (size < 0) {
+				//items are not counted, so no item was created
+				return created;
+			}
+			AtomicReferenceArray<AtomicReferenceArray<Node>> pages = this.pages;
+			for (int i = 0; i < pages.length(); i++) {
+				AtomicReferenceArray<Node> page = pages.get(i);
+				if (page != null) {
+					for (int j = 0; j < page.length(); j++) {
+						Node item = page.get(j);
+						if (item != null) {
+							created.add(item);
+						}
+					}
+				}
+			}
+			return created;
+		}
+
+		/**
+		 * Keep an item node created for a previous version of the collection
+		 */
+		void put(Node item) {
+			int index = item.index;
+			AtomicReferenceArray<AtomicReferenceArray<Node>> pages = this.pages;
+			int pageIndex = index >>> PAGE_SHIFT;
+			AtomicReferenceArray<Node> page = pages.get(pageIndex);
+			if (page == null) {
+				pages.compareAndSet(pageIndex, null, new AtomicReferenceArray<Node>(PAGE_SIZE));
+				page = pages.get(pageIndex);
+			}
+			page.compareAndSet(index & (PAGE_SIZE - 1), null, item);
+		}
+
+		void discard() {
+			size();
+			this.pages = new AtomicReferenceArray<>(pages.length());
 		}
 	}
-	
+
 }
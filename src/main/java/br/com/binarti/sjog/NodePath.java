@@ -3,29 +3,47 @@ package br.com.binarti.sjog;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.StringJoiner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Represents a node path
+ * Represents a node path.<br/>
+ * Paths created by {@link #create(String)} are canonical: repeated expressions return the same immutable instance
+ * from a bounded cache. Paths with a collection index greater than {@value #MAX_CACHED_INDEX} are not cached.
  * 
  * @author francofabio
  * 
  */
 public class NodePath {
 
-	private static final Pattern COLLECTION_NOTATION = Pattern.compile("^(.*)\\[([\\d]+)\\]$");
+	static final int MAX_CACHED_INDEX = 255;
+	private static final int CACHE_CAPACITY = 8192;
+	private static final String[] INDEX_NODES = new String[MAX_CACHED_INDEX + 1];
 	
-	private String node;
+	/*
+	 * Two generations of canonical paths. When the current generation is full it becomes the previous one,
+	 * paths still in use are promoted back to the current generation and the others are discarded.
+	 */
+	private static volatile ConcurrentHashMap<String, NodePath> cache = new ConcurrentHashMap<>();
+	private static volatile ConcurrentHashMap<String, NodePath> previousCache = new ConcurrentHashMap<>();
+	
+	static {
+		for (int i = 0; i < INDEX_NODES.length; i++) {
+			INDEX_NODES[i] = "[" + i + "]";
+		}
+	}
+	
+	private final String node;
 	private String path;
-	private NodePath parent;
+	private final NodePath parent;
 	
-	private boolean collection;
-	private boolean collectionItem;
+	private final boolean collection;
+	private final boolean collectionItem;
 	private boolean insideCollection;
-	private int index;
+	private final int index;
+	private final String key;
 	private Class<?> type;
+	private final boolean cacheable;
+	private boolean canonical;
 	
 	/**
 	 * Create a node path representation in graph notation.<br>
@@ -35,13 +53,16 @@ public class NodePath {
 	 * @param collection Determine if this node is a collection
 	 * @param collectionItem Determine if this node is a collection item
 	 * @param index Index of the collection item. Use -1 if item is not a collection item.
+	 * @param key Key of the map entry. Use <code>null</code> if item is not a map entry.
 	 */
-	private NodePath(String node, NodePath parent, boolean collection, boolean collectionItem, int index) {
+	private NodePath(String node, NodePath parent, boolean collection, boolean collectionItem, int index, String key) {
 		this.node = node;
 		this.parent = parent;
 		this.collection = collection;
 		this.collectionItem = collectionItem;
 		this.index = index;
+		this.key = key;
+		this.cacheable = (parent == null || parent.cacheable) && index <= MAX_CACHED_INDEX;
 		determineFullPath();
 	}
 	
@@ -52,20 +73,17 @@ public class NodePath {
 	 * @param parent Parent of the node. If node not got a parent, pass <code>null</code>
 	 */
 	public NodePath(String node, NodePath parent) {
-		this(node, parent, false, false, -1);
+		this(node, parent, false, false, -1, null);
 	}
 
 	private void determineFullPath() {
 		if (parent == null) {
 			this.path = node;
 		} else {
-			if (isCollectionItem()) {
+			if (isCollectionItem() || isMapEntry()) {
 				this.path = parent.getPath() + node;
 			} else {
-				StringJoiner fullPath = new StringJoiner(".");
-				fullPath.add(parent.getPath());
-				fullPath.add(node);
-				this.path = fullPath.toString();
+				this.path = parent.getPath() + "." + node;
 			}
 		}
 	}
@@ -108,10 +126,6 @@ public class NodePath {
 		return collectionItem;
 	}
 	
-	void setCollection(boolean collection) {
-		this.collection = collection;
-	}
-	
 	/**
 	 * Determine whether the property is inside a collection
 	 */
@@ -119,10 +133,6 @@ public class NodePath {
 		return insideCollection;
 	}
 	
-	void setInsideCollection(boolean insideCollection) {
-		this.insideCollection = insideCollection;
-	}
-	
 	/**
 	 * Index of the item in collection. Used only if the path element represent a access by index in element item.</br>
 	 * Like: <code>collection[0]</code> 
@@ -131,8 +141,19 @@ public class NodePath {
 		return index;
 	}
 	
-	void setIndex(int index) {
-		this.index = index;
+	/**
+	 * Determine if this path represents a map entry, accessed by key.</br>
+	 * Like: <code>prices['EUR']</code>
+	 */
+	public boolean isMapEntry() {
+		return key != null;
+	}
+	
+	/**
+	 * Key of the map entry. Used only if the path element represents a map entry
+	 */
+	public String getKey() {
+		return key;
 	}
 	
 	/**
@@ -143,10 +164,6 @@ public class NodePath {
 		return type;
 	}
 	
-	void setType(Class<?> type) {
-		this.type = type;
-	}
-	
 	/**
 	 * Determine whether this element is root of the path
 	 * @return <code>true</code>If this element is root, otherwise return <code>false</code> 
@@ -194,32 +211,230 @@ public class NodePath {
 		return true;
 	}
 
+	/**
+	 * Parse a path expression, like <code>person.address.city</code>, <code>order.itens[0].id</code> or
+	 * <code>product.prices['EUR'].amount</code>.<br/>
+	 * Repeated expressions return the same canonical instance. On a cache miss only the last segment is scanned, the
+	 * parent path is resolved (and cached) the same way, without regular expressions or intermediate arrays.
+	 * @param fullPath The path expression
+	 * @return The last node of the path
+	 */
 	public static NodePath create(String fullPath) {
-		String[] nodes = fullPath.split("[.]");
-		StringJoiner path = new StringJoiner(".");
-		NodePath parent = null;
-		NodePath last = null;
-		for (String node : nodes) {
-			int index = -1;
-			boolean collectionItem = false;
-			Matcher colNotationMatcher = COLLECTION_NOTATION.matcher(node);
-			if (colNotationMatcher.find()) {
-				/*
-				 * create a node for refer a node in collection and add the node as child
-				 */
-				String collectionNode = colNotationMatcher.group(1);
-				if (collectionNode != null && !collectionNode.trim().isEmpty()) {
-					parent = new NodePath(collectionNode, parent, true, false, -1);
+		//trailing separators are ignored
+		int end = fullPath.length();
+		while (end > 0 && fullPath.charAt(end - 1) == '.') {
+			end--;
+		}
+		if (end == 0 && !fullPath.isEmpty()) {
+			return null;
+		}
+		return create(fullPath, end);
+	}
+	
+	private static NodePath create(String fullPath, int end) {
+		String key = (end == fullPath.length()) ? fullPath : fullPath.substring(0, end);
+		//a prefix ending with an empty segment is not the canonical form of the same expression
+		boolean canonical = (end == 0 || fullPath.charAt(end - 1) != '.');
+		if (canonical) {
+			NodePath cached = cached(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		int separator = lastSeparator(fullPath, end);
+		NodePath parent = (separator < 0) ? null : create(fullPath, separator);
+		NodePath path = createSegment(fullPath, separator + 1, end, parent);
+		if (canonical && path.cacheable) {
+			cache(key, path);
+		}
+		return path;
+	}
+	
+	/**
+	 * Get the path of a child property, derived from this path
+	 * @param name Property name
+	 * @return The child path, canonical when possible
+	 */
+	NodePath child(String name) {
+		//paths created by the public constructor could have any form, so their children are not cached
+		if (!canonical || !cacheable) {
+			return new NodePath(name, this);
+		}
+		String childPath = path + "." + name;
+		NodePath child = cached(childPath);
+		if (child == null) {
+			child = new NodePath(name, this);
+			cache(childPath, child);
+		}
+		return child;
+	}
+	
+	private static NodePath cached(String path) {
+		NodePath cached = cache.get(path);
+		if (cached == null) {
+			cached = previousCache.get(path);
+			if (cached != null) {
+				cache(path, cached);
+			}
+		}
+		return cached;
+	}
+	
+	private static void cache(String path, NodePath nodePath) {
+		nodePath.canonical = true;
+		ConcurrentHashMap<String, NodePath> current = cache;
+		current.put(path, nodePath);
+		if (current.size() > CACHE_CAPACITY) {
+			synchronized (NodePath.class) {
+				if (cache == current) {
+					previousCache = current;
+					cache = new ConcurrentHashMap<>();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Find the last separator before the end of a path, ignoring dots inside map keys
+	 * @return Position of the separator, or -1 if the path has a single segment
+	 */
+	private static int lastSeparator(String fullPath, int end) {
+		int i = end - 1;
+		while (i >= 0) {
+			char c = fullPath.charAt(i);
+			if (c == '.') {
+				return i;
+			}
+			if (c == ']' && i > 0 && isQuote(fullPath.charAt(i - 1))) {
+				int bracket = mapKeyStart(fullPath, 0, i + 1);
+				if (bracket >= 0) {
+					i = bracket;
 				}
-				collectionItem = true;
-				index = Integer.parseInt(colNotationMatcher.group(2));
-				node = String.format("[%d]", index);
 			}
-			path.add(node);
-			last = new NodePath(node, parent, false, collectionItem, index);
-			parent = last;
+			i--;
+		}
+		return -1;
+	}
+	
+	private static NodePath createSegment(String fullPath, int start, int end, NodePath parent) {
+		int bracket = mapKeyStart(fullPath, start, end);
+		if (bracket >= 0) {
+			parent = createPrefix(fullPath, start, bracket, parent, false);
+			String key = fullPath.substring(bracket + 2, end - 2);
+			return new NodePath(keyNode(key), parent, false, false, -1, key);
+		}
+		bracket = collectionIndexStart(fullPath, start, end);
+		if (bracket < 0) {
+			return new NodePath(fullPath.substring(start, end), parent, false, false, -1, null);
+		}
+		/*
+		 * create a node for refer a node in collection and add the node as child
+		 */
+		parent = createPrefix(fullPath, start, bracket, parent, true);
+		int index = parseIndex(fullPath, bracket + 1, end - 1);
+		return new NodePath(indexNode(index), parent, false, true, index, null);
+	}
+	
+	/**
+	 * Create the node of the property that owns a collection index or map key, like <code>itens</code> for
+	 * <code>itens[0]</code>. Chained indexes and keys, like <code>matrix[0][1]</code>, are supported.
+	 * @param collection Determine if the property is a collection
+	 * @return The node of the property, or the parent when the segment has no property name
+	 */
+	private static NodePath createPrefix(String fullPath, int start, int end, NodePath parent, boolean collection) {
+		if (isBlank(fullPath, start, end)) {
+			return parent;
+		}
+		if (mapKeyStart(fullPath, start, end) >= 0 || collectionIndexStart(fullPath, start, end) >= 0) {
+			return createSegment(fullPath, start, end, parent);
+		}
+		return new NodePath(fullPath.substring(start, end), parent, collection, false, -1, null);
+	}
+	
+	/**
+	 * Find the start of a map key (<code>['key']</code> or <code>["key"]</code>) at the end of a segment
+	 * @return Position of the open bracket, or -1 if segment does not end with a map key
+	 */
+	static int mapKeyStart(String fullPath, int start, int end) {
+		if (end - start < 4 || fullPath.charAt(end - 1) != ']') {
+			return -1;
+		}
+		char quote = fullPath.charAt(end - 2);
+		if (!isQuote(quote)) {
+			return -1;
+		}
+		int open = fullPath.lastIndexOf(quote, end - 3);
+		if (open - 1 < start || fullPath.charAt(open - 1) != '[') {
+			return -1;
+		}
+		return open - 1;
+	}
+	
+	private static boolean isQuote(char c) {
+		return c == '\'' || c == '"';
+	}
+	
+	/**
+	 * Find the start of a collection index (<code>[n]</code>) at the end of a segment
+	 * @return Position of the open bracket, or -1 if segment does not end with a collection index
+	 */
+	private static int collectionIndexStart(String fullPath, int start, int end) {
+		if (end - start < 3 || fullPath.charAt(end - 1) != ']') {
+			return -1;
+		}
+		int i = end - 2;
+		while (i >= start && isDigit(fullPath.charAt(i))) {
+			i--;
+		}
+		if (i == end - 2 || i < start || fullPath.charAt(i) != '[') {
+			return -1;
+		}
+		return i;
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	private static boolean isBlank(String fullPath, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (fullPath.charAt(i) > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int parseIndex(String fullPath, int start, int end) {
+		long index = 0;
+		for (int i = start; i < end; i++) {
+			index = index * 10 + (fullPath.charAt(i) - '0');
+			if (index > Integer.MAX_VALUE) {
+				//report the same error of Integer.parseInt
+				return Integer.parseInt(fullPath.substring(start, end));
+			}
+		}
+		return (int) index;
+	}
+	
+	/**
+	 * Node name of a collection item, in the canonical form <code>[n]</code>
+	 */
+	static String indexNode(int index) {
+		if (index < INDEX_NODES.length) {
+			return INDEX_NODES[index];
+		}
+		return "[" + index + "]";
+	}
+
+	/**
+	 * Node name of a map entry, in the canonical form <code>['key']</code>
+	 */
+	static String keyNode(String key) {
+		if (key.indexOf('\'') >= 0) {
+			return "[\"" + key + "\"]";
 		}
-		return last;
+		return "['" + key + "']";
 	}
 
 	public boolean isSame(NodePath path) {
@@ -4,27 +4,34 @@ import static br.com.binarti.sjog.Node.ROOT_NODE;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Represents a object graph in a given moment.<br/>
  * A object graph represents the properties nodes that can be accessed by the property name  or an expression.
+ * An object graph can be read by many threads. Nodes are expanded on demand without locks, see {@link Node}.
  *  
  * @author francofabio
  *
  */
 public class ObjectGraph {
 	
-	private Node rootNode;
-	private Object obj;
-	private ObjectGraphContext context;
+	private final Node rootNode;
+	private final Object obj;
+	private final ObjectGraphContext context;
+	private final ExpansionState state;
 	
 	ObjectGraph(Object obj, ObjectGraphContext context) {
 		this.obj = obj;
 		boolean isRootCollection = false;
 		if (obj != null) {
-			isRootCollection = context.getPredicate().isCollection(obj.getClass());
+			isRootCollection = context.isCollection(obj.getClass());
+		}
+		this.state = ExpansionState.create(context);
+		this.rootNode = new Node(obj, state, isRootCollection);
+		if (context.getParallelThreshold() > 0) {
+			ParallelExpansion.expand(rootNode, context.getParallelThreshold(), context.getParallelPool());
 		}
-		this.rootNode = new Node(ROOT_NODE, null, NodePath.create(ROOT_NODE), obj, context, isRootCollection);
 		this.context = context;
 	}
 
@@ -36,6 +43,13 @@ public class ObjectGraph {
 		return obj;
 	}
 	
+	/**
+	 * Context of the graph
+	 */
+	ObjectGraphContext getContext() {
+		return context;
+	}
+	
 	/**
 	 * Returns the root object of the tree
 	 * @return Root object
@@ -62,45 +76,198 @@ public class ObjectGraph {
 	}
 	
 	/**
-	 * Get property value from object in graph
+	 * Get property value from object in graph.<br/>
+	 * Only the properties in the given path are resolved, the other properties of the nodes in the path are not
+	 * loaded until the nodes are expanded. The limits of the expansion do not apply to properties read by path.
 	 * @param name Property name
 	 * @return Property value
 	 */
 	public Object get(String name) {
+		Node node = resolve(name);
+		return (node == null) ? null : node.getValue();
+	}
+	
+	/**
+	 * Get an <code>int</code> property value, or an item of a primitive array, without boxing.<br/>
+	 * Values of types with a widening conversion to <code>int</code>, like <code>short</code>, are also accepted.
+	 * @param name Property name
+	 * @return Property value
+	 * @throws ObjectGraphException If the value is <code>null</code> or can not be read as <code>int</code>
+	 */
+	public int getInt(String name) {
+		NodePath path = NodePath.create(context.normalizePath(name));
+		Node parent = resolveParent(path, int.class);
+		if (parent == null) {
+			return PrimitiveValues.toInt(obj, path.getPath());
+		}
+		Object parentValue = parent.getValue();
+		if (path.isCollectionItem() && PrimitiveValues.isPrimitiveArray(parentValue)) {
+			return PrimitiveValues.getInt(parentValue, checkIndex(parentValue, path), path.getPath());
+		}
+		ExpansionPlan.Step step = parent.unresolvedStep(path);
+		if (step != null) {
+			return Reflect.invokeInt(step.getProperty().getAccessor(), parentValue, path.getPath());
+		}
+		return PrimitiveValues.toInt(resolveChild(parent, path).getValue(), path.getPath());
+	}
+	
+	/**
+	 * Get a <code>long</code> property value, or an item of a primitive array, without boxing.<br/>
+	 * Values of types with a widening conversion to <code>long</code>, like <code>int</code>, are also accepted.
+	 * @param name Property name
+	 * @return Property value
+	 * @throws ObjectGraphException If the value is <code>null</code> or can not be read as <code>long</code>
+	 */
+	public long getLong(String name) {
+		NodePath path = NodePath.create(context.normalizePath(name));
+		Node parent = resolveParent(path, long.class);
+		if (parent == null) {
+			return PrimitiveValues.toLong(obj, path.getPath());
+		}
+		Object parentValue = parent.getValue();
+		if (path.isCollectionItem() && PrimitiveValues.isPrimitiveArray(parentValue)) {
+			return PrimitiveValues.getLong(parentValue, checkIndex(parentValue, path), path.getPath());
+		}
+		ExpansionPlan.Step step = parent.unresolvedStep(path);
+		if (step != null) {
+			return Reflect.invokeLong(step.getProperty().getAccessor(), parentValue, path.getPath());
+		}
+		return PrimitiveValues.toLong(resolveChild(parent, path).getValue(), path.getPath());
+	}
+	
+	/**
+	 * Get a <code>double</code> property value, or an item of a primitive array, without boxing.<br/>
+	 * Values of types with a widening conversion to <code>double</code>, like <code>int</code>, are also accepted.
+	 * @param name Property name
+	 * @return Property value
+	 * @throws ObjectGraphException If the value is <code>null</code> or can not be read as <code>double</code>
+	 */
+	public double getDouble(String name) {
+		NodePath path = NodePath.create(context.normalizePath(name));
+		Node parent = resolveParent(path, double.class);
+		if (parent == null) {
+			return PrimitiveValues.toDouble(obj, path.getPath());
+		}
+		Object parentValue = parent.getValue();
+		if (path.isCollectionItem() && PrimitiveValues.isPrimitiveArray(parentValue)) {
+			return PrimitiveValues.getDouble(parentValue, checkIndex(parentValue, path), path.getPath());
+		}
+		ExpansionPlan.Step step = parent.unresolvedStep(path);
+		if (step != null) {
+			return Reflect.invokeDouble(step.getProperty().getAccessor(), parentValue, path.getPath());
+		}
+		return PrimitiveValues.toDouble(resolveChild(parent, path).getValue(), path.getPath());
+	}
+	
+	/**
+	 * Get a <code>boolean</code> property value, or an item of a primitive array, without boxing.
+	 * @param name Property name
+	 * @return Property value
+	 * @throws ObjectGraphException If the value is <code>null</code> or is not a <code>boolean</code>
+	 */
+	public boolean getBoolean(String name) {
+		NodePath path = NodePath.create(context.normalizePath(name));
+		Node parent = resolveParent(path, boolean.class);
+		if (parent == null) {
+			return PrimitiveValues.toBoolean(obj, path.getPath());
+		}
+		Object parentValue = parent.getValue();
+		if (path.isCollectionItem() && PrimitiveValues.isPrimitiveArray(parentValue)) {
+			return PrimitiveValues.getBoolean(parentValue, checkIndex(parentValue, path), path.getPath());
+		}
+		ExpansionPlan.Step step = parent.unresolvedStep(path);
+		if (step != null) {
+			return Reflect.invokeBoolean(step.getProperty().getAccessor(), parentValue, path.getPath());
+		}
+		return PrimitiveValues.toBoolean(resolveChild(parent, path).getValue(), path.getPath());
+	}
+	
+	/**
+	 * Resolve the parent node of a typed property
+	 * @return The parent node, or <code>null</code> if the path is the root path
+	 * @throws ObjectGraphException If an object in the path is <code>null</code>
+	 */
+	private Node resolveParent(NodePath path, Class<?> primitive) {
+		if (path.getParent() == null) {
+			return null;
+		}
+		Node parent = resolve(path.getParent());
+		if (parent == null || parent.getValue() == null) {
+			throw new ObjectGraphException("Property " + path.getPath() + " is null and can not be read as " + primitive);
+		}
+		return parent;
+	}
+	
+	private static int checkIndex(Object array, NodePath path) {
+		int index = path.getIndex();
+		if (index < 0 || index >= PrimitiveValues.length(array)) {
+			throw new IndexOutOfBoundsException("Unreachable collection item: " + path.getPath());
+		}
+		return index;
+	}
+	
+	/**
+	 * Resolve the node of a property path
+	 * @param name Property name
+	 * @return The node, or <code>null</code> if an object in the path is <code>null</code>
+	 */
+	private Node resolve(String name) {
+		return resolve(NodePath.create(context.normalizePath(name)));
+	}
+	
+	private Node resolve(NodePath path) {
 		if (obj == null) {
 			return null;
 		}
-		NodePath path = NodePath.create(context.normalizePath(name));
 		Iterator<NodePath> it = path.iterator();
 		Object parent = obj;
-		Object value = null;
+		Node node = null;
 		Node nodeParent = rootNode;
 		while (it.hasNext()) {
 			NodePath curPath = it.next();
-			Node node;
 			//For null parent return null value
 			if (parent == null) {
 				return null;
 			}
-			node = nodeParent.getChild(curPath.getNode());
-			if (node == null) {
-				if (curPath.isCollectionItem()) {
-					Object collection = parent;
-					if ((curPath.getIndex() < 0 || curPath.getIndex() >= ObjectGraphHelper.getCollectionSize(collection))) {
-						throw new IndexOutOfBoundsException("Unreachable collection item: " + curPath.getPath());
-					}
-				} else {
-					throw new ObjectGraphException("Property " + curPath.getNode() + " not found or not accessible");
-				}
-			}
-			if (curPath.isCollection() && !node.isCollection()) {
+			node = curPath.getNode().equals(ROOT_NODE) ? rootNode : resolveChild(nodeParent, curPath);
+			if (curPath.isCollection() && !node.isCollection() && !isIndexable(node)) {
 				throw new ObjectGraphException("Property " + curPath.getNode() + " is not a collection");
 			}
-			value = node.getValue();
 			nodeParent = node;
-			parent = value;
+			parent = node.getValue();
+		}
+		return node;
+	}
+	
+	private static Node resolveChild(Node parent, NodePath childPath) {
+		Node node = parent.resolveChild(childPath);
+		if (node == null) {
+			if (childPath.isCollectionItem()) {
+				throw new IndexOutOfBoundsException("Unreachable collection item: " + childPath.getPath());
+			} else {
+				throw new ObjectGraphException("Property " + childPath.getNode() + " not found or not accessible");
+			}
 		}
-		return value;
+		return node;
+	}
+	
+	/**
+	 * Determine if the items of a node, that is not a collection, can be accessed by index, like primitive arrays
+	 */
+	private static boolean isIndexable(Node node) {
+		Object value = node.getValue();
+		return (value == null) ? node.isPrimitive() : PrimitiveValues.isPrimitiveArray(value);
+	}
+
+	/**
+	 * Compile a property expression using the context of this object graph.<br/>
+	 * The compiled expression can be evaluated many times, against this or any other object.
+	 * @param name Property name or path
+	 * @return The compiled expression
+	 * @see PathExpression
+	 */
+	public PathExpression compile(String name) {
+		return new PathExpression(name, context);
 	}
 
 	/**
@@ -109,8 +276,59 @@ public class ObjectGraph {
 	 * @return The collection size
 	 */
 	public int getCollectionLength(String name) {
-		Object collection = get(name);
-		return ObjectGraphHelper.getCollectionSize(collection);
+		Node node = resolve(name);
+		Object collection = (node == null) ? null : node.getValue();
+		if (collection == null) {
+			return 0;
+		}
+		if (PrimitiveValues.isPrimitiveArray(collection)) {
+			return PrimitiveValues.length(collection);
+		}
+		if (!context.isCollection(collection.getClass())) {
+			throw new ObjectGraphException("The class type " + collection.getClass() + " is not a collection");
+		}
+		//the items of the node are counted, so streams and iterators are consumed only once
+		return node.collectionSize();
+	}
+	
+	/**
+	 * Determine if the expansion of any node of this graph was truncated by the limits of the builder.<br/>
+	 * Only the nodes expanded so far are considered.
+	 * @see Node#isTruncated()
+	 */
+	public boolean isTruncated() {
+		return state.isTruncated();
+	}
+	
+	/**
+	 * Refresh the nodes of this graph after the object changed.<br/>
+	 * Only the subtrees of the changed values are discarded, see {@link Node#refresh()}.
+	 * @return <code>true</code> if any value changed
+	 */
+	public boolean refresh() {
+		return rootNode.refresh();
+	}
+	
+	/**
+	 * Compare this graph with a newer version, matching collection items by index
+	 * @param after The new graph, built with the same context
+	 * @return Stream of the differences, produced on demand
+	 * @see GraphDiff
+	 */
+	public Stream<GraphChange> diff(ObjectGraph after) {
+		return new GraphDiff().compare(this, after);
+	}
+	
+	/**
+	 * Expand all nodes of this graph and flatten them into an immutable snapshot.<br/>
+	 * The snapshot holds the nodes in a few large arrays instead of one object for each node, so it is cheap to
+	 * retain for a long time. Values are read once, later changes of the object are not seen by the snapshot.
+	 * The limits and the identity mode of the builder apply to the expansion.
+	 * @return The snapshot of the graph
+	 * @see GraphSnapshot
+	 */
+	public GraphSnapshot freeze() {
+		return new GraphSnapshot(rootNode, context);
 	}
 	
 	/**
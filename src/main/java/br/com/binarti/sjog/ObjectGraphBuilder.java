@@ -2,10 +2,13 @@ package br.com.binarti.sjog;
 
 import static br.com.binarti.sjog.Node.ROOT_NODE;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class represent a builder for building <code>ObjectGraph</code> instances.<br/>
@@ -20,12 +23,22 @@ public class ObjectGraphBuilder {
 	private Set<String> includes;
 	private Set<String> excludes;
 	private Map<String, Boolean> autoIncludePrimitives;
+	private List<CollectionAdapter> collectionAdapters;
+	private IdentityMode identityMode;
+	private ExpansionLimits limits;
+	private boolean sortByName;
+	private int parallelThreshold;
+	private ForkJoinPool parallelPool;
+	private volatile ObjectGraphContext context;
 	
 	public ObjectGraphBuilder(ObjectGraphPredicate objectGraphPredicate) {
 		this.predicate = objectGraphPredicate;
 		this.includes = new TreeSet<>();
 		this.excludes = new TreeSet<>();
 		this.autoIncludePrimitives = new HashMap<>();
+		this.collectionAdapters = new ArrayList<>();
+		this.identityMode = IdentityMode.NONE;
+		this.limits = ExpansionLimits.UNLIMITED;
 	}
 	
 	public ObjectGraphBuilder() {
@@ -40,6 +53,7 @@ public class ObjectGraphBuilder {
 	public ObjectGraphBuilder include(String name) {
 		if (!includes.contains(name)) {
 			includes.add(name);
+			context = null;
 		}
 		return this;
 	}
@@ -50,6 +64,7 @@ public class ObjectGraphBuilder {
 	 */
 	public ObjectGraphBuilder autoIncludePrimitivesFromRoot(boolean value) {
 		autoIncludePrimitives.put(ROOT_NODE, value);
+		context = null;
 		return this;
 	}
 	
@@ -59,6 +74,7 @@ public class ObjectGraphBuilder {
 	 */
 	public ObjectGraphBuilder autoIncludePrimitives(String name, boolean value) {
 		autoIncludePrimitives.put(name, value);
+		context = null;
 		return this;
 	}
 	
@@ -72,6 +88,7 @@ public class ObjectGraphBuilder {
 	public ObjectGraphBuilder exclude(String name) {
 		if (!excludes.contains(name)) {
 			excludes.add(name);
+			context = null;
 		}
 		return this;
 	}
@@ -92,12 +109,143 @@ public class ObjectGraphBuilder {
 		return exclude(name + ".*");
 	}
 	
+	/**
+	 * Register an adapter to access the items of collections.<br/>
+	 * Registered adapters are checked in order, before the adapters of the predicate. The classes supported by
+	 * the adapter are expanded as collections, like streams with {@link CollectionAdapters#STREAM}.
+	 * @param adapter The collection adapter
+	 */
+	public ObjectGraphBuilder collectionAdapter(CollectionAdapter adapter) {
+		collectionAdapters.add(adapter);
+		context = null;
+		return this;
+	}
+	
+	/**
+	 * Determine how objects reachable from more than one path, like shared objects and bidirectional relationships,
+	 * are expanded. Objects are tracked by identity, once for each object graph. Not supported with the parallel
+	 * expansion, see {@link #parallelExpansion(int, ForkJoinPool)}.
+	 * @param mode The identity mode. Default is {@link IdentityMode#NONE}
+	 */
+	public ObjectGraphBuilder identityMode(IdentityMode mode) {
+		this.identityMode = mode;
+		context = null;
+		return this;
+	}
+	
+	/**
+	 * Limit the depth of the expanded nodes. Nodes at the maximum depth are not expanded and are reported as
+	 * truncated, see {@link Node#isTruncated()}.<br/>
+	 * The root node has depth zero, so <code>maxDepth(1)</code> expands only the root node.
+	 * @param maxDepth Maximum depth, zero or less for unlimited
+	 */
+	public ObjectGraphBuilder maxDepth(int maxDepth) {
+		this.limits = limits.maxDepth(maxDepth);
+		context = null;
+		return this;
+	}
+	
+	/**
+	 * Limit the number of nodes created by the expansion of each object graph. When the limit is reached, the
+	 * remaining children of the node being expanded are omitted, and the node is reported as truncated.
+	 * @param maxNodes Maximum number of nodes, zero or less for unlimited
+	 */
+	public ObjectGraphBuilder maxNodes(int maxNodes) {
+		this.limits = limits.maxNodes(maxNodes);
+		context = null;
+		return this;
+	}
+	
+	/**
+	 * Limit the number of items of each collection node. Only the first items of larger collections are children
+	 * of the node, and the node is reported as truncated.
+	 * @param maxCollectionItems Maximum number of items, zero or less for unlimited
+	 */
+	public ObjectGraphBuilder maxCollectionItems(int maxCollectionItems) {
+		this.limits = limits.maxCollectionItems(maxCollectionItems);
+		context = null;
+		return this;
+	}
+	
+	/**
+	 * Limit the time spent expanding each object graph. Nodes are not expanded after the timeout, counted from
+	 * {@link #build(Object)}, and are reported as truncated.
+	 * @param timeoutMillis Timeout in milliseconds, zero or less for no timeout
+	 */
+	public ObjectGraphBuilder timeout(long timeoutMillis) {
+		this.limits = limits.timeoutMillis(timeoutMillis);
+		context = null;
+		return this;
+	}
+	
+	/**
+	 * Determine if the children of the nodes are expanded in order of name, like after {@link ObjectGraph#sortByName()}.<br/>
+	 * The order of the properties is computed once for each class, so the children are not sorted in each graph.
+	 * @param value <code>true</code> Indicates that the children should be expanded in order of name
+	 */
+	public ObjectGraphBuilder sortByName(boolean value) {
+		this.sortByName = value;
+		context = null;
+		return this;
+	}
+	
+	/**
+	 * Expand all nodes of the object graphs when built, in parallel, using the common fork/join pool.
+	 * @param threshold Maximum number of sibling nodes, like the items of a collection, expanded by one task
+	 * @see #parallelExpansion(int, ForkJoinPool)
+	 */
+	public ObjectGraphBuilder parallelExpansion(int threshold) {
+		return parallelExpansion(threshold, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Expand all nodes of the object graphs when built, in parallel.<br/>
+	 * Children with more siblings than the threshold are split into fork/join tasks. The children keep the same
+	 * order of the expansion on demand. Identity modes can not be used, because the first occurrence of a shared
+	 * object would be the first one reached by the threads. Graphs with cycles must be built with limits, see
+	 * {@link #maxDepth(int)}.
+	 * @param threshold Maximum number of sibling nodes, like the items of a collection, expanded by one task
+	 * @param pool Pool of the tasks
+	 */
+	public ObjectGraphBuilder parallelExpansion(int threshold, ForkJoinPool pool) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("Invalid parallel expansion threshold " + threshold);
+		}
+		this.parallelThreshold = threshold;
+		this.parallelPool = pool;
+		context = null;
+		return this;
+	}
+	
 	/**
 	 * Create a object graph context using configured data in this builder
 	 * @return Object graph context with included, excluded and auto include primitives configuration in this builder
+	 * @throws IllegalStateException If an identity mode is used with the parallel expansion
 	 */
 	public ObjectGraphContext buildContext() {
-		return new ObjectGraphContext(predicate, includes, excludes, autoIncludePrimitives);
+		if (parallelThreshold > 0 && identityMode != IdentityMode.NONE) {
+			throw new IllegalStateException("Identity mode " + identityMode + " can not be used with parallel expansion");
+		}
+		ObjectGraphContext context = new ObjectGraphContext(predicate, includes, excludes, new HashMap<>(autoIncludePrimitives),
+				new ArrayList<>(collectionAdapters));
+		context.identityMode(identityMode);
+		context.limits(limits);
+		context.parallelExpansion(parallelThreshold, parallelPool);
+		context.sortByName(sortByName);
+		return context;
+	}
+	
+	/**
+	 * Context used to build object graphs. The context is compiled once and reused, with its expansion plans,
+	 * until the configuration of this builder changes.
+	 */
+	private ObjectGraphContext compiledContext() {
+		ObjectGraphContext compiled = context;
+		if (compiled == null) {
+			compiled = buildContext();
+			context = compiled;
+		}
+		return compiled;
 	}
 	
 	/**
@@ -107,11 +255,21 @@ public class ObjectGraphBuilder {
 	 * @return An object graph for a given object
 	 */
 	public ObjectGraph build(Object root) {
-		ObjectGraphContext context = buildContext();
-		ObjectGraph objectGraph = new ObjectGraph(root, context);
+		ObjectGraph objectGraph = new ObjectGraph(root, compiledContext());
 		return objectGraph;
 	}
 
+	/**
+	 * Compile a property expression using the configuration of this builder.<br/>
+	 * The compiled expression can be evaluated against any object, without building an object graph.
+	 * @param name Property name or path
+	 * @return The compiled expression
+	 * @see PathExpression
+	 */
+	public PathExpression compile(String name) {
+		return new PathExpression(name, compiledContext());
+	}
+
 	private static Class<? extends ObjectGraphPredicate> defaultObjectGraphPredicateClass = DefaultObjectGraphPredicate.class;
 	
 	/**
@@ -2,30 +2,44 @@ package br.com.binarti.sjog;
 
 import static br.com.binarti.sjog.Node.ROOT_NODE;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class ObjectGraphContext {
 	
-	private static final Pattern COLLECTION_NOTATION_IN_EXPR = Pattern.compile("(\\[[\\d]+\\])");
-	
 	private ObjectGraphPredicate predicate;
 	private Set<String> includes;
 	private Set<String> excludes;
 	private Map<String, Boolean> autoIncludePrimitives;
+	private volatile PathRules rules;
+	private List<CollectionAdapter> collectionAdapters;
+	private IdentityMode identityMode = IdentityMode.NONE;
+	private ExpansionLimits limits = ExpansionLimits.UNLIMITED;
+	private boolean sortedByName;
+	private int parallelThreshold;
+	private ForkJoinPool parallelPool;
 		
 	public ObjectGraphContext(ObjectGraphPredicate predicate, Set<String> includes, Set<String> excludes, Map<String, Boolean> autoIncludePrimitives) {
+		this(predicate, includes, excludes, autoIncludePrimitives, Collections.emptyList());
+	}
+	
+	public ObjectGraphContext(ObjectGraphPredicate predicate, Set<String> includes, Set<String> excludes, Map<String, Boolean> autoIncludePrimitives,
+			List<CollectionAdapter> collectionAdapters) {
 		this.predicate = predicate;
+		this.collectionAdapters = collectionAdapters;
 		this.includes = normalizePath(includes);
 		this.excludes = normalizePath(excludes);
 		this.autoIncludePrimitives = autoIncludePrimitives;
 		normalizePathKeys(autoIncludePrimitives);
+		this.rules = PathRules.compile(this.includes, this.excludes, this.autoIncludePrimitives);
 	}
 
 	/**
@@ -34,6 +48,7 @@ public class ObjectGraphContext {
 	 */
 	public void autoIncludePrimitives(String name, boolean value) {
 		autoIncludePrimitives.put(name, value);
+		this.rules = PathRules.compile(includes, excludes, autoIncludePrimitives);
 	}
 	
 	/**
@@ -52,48 +67,169 @@ public class ObjectGraphContext {
 		return predicate;
 	}
 	
-	private boolean isIncluded(NodePath node) {
-		for (String path : includes) {
-			String fullPath = normalizePath(path);
-			NodePath rootedPath = NodePath.create(fullPath);
-			if (rootedPath.isSame(node)) {
+	/**
+	 * Determine how objects reachable from more than one path are expanded
+	 * @param identityMode The identity mode
+	 */
+	void identityMode(IdentityMode identityMode) {
+		this.identityMode = identityMode;
+	}
+	
+	/**
+	 * How objects reachable from more than one path are expanded. Default is {@link IdentityMode#NONE}.
+	 */
+	public IdentityMode getIdentityMode() {
+		return identityMode;
+	}
+	
+	void limits(ExpansionLimits limits) {
+		this.limits = limits;
+	}
+	
+	/**
+	 * Limits of the expansion of the object graphs of this context
+	 */
+	ExpansionLimits getLimits() {
+		return limits;
+	}
+	
+	/**
+	 * Determine if the children of the nodes are expanded in order of name
+	 */
+	void sortByName(boolean value) {
+		this.sortedByName = value;
+		//the expansion plans are kept by the rules
+		this.rules = PathRules.compile(includes, excludes, autoIncludePrimitives);
+	}
+	
+	/**
+	 * Determine if the children of the nodes are expanded in order of name. The items of collections keep the order
+	 * of the collection.
+	 */
+	public boolean isSortedByName() {
+		return sortedByName;
+	}
+	
+	void parallelExpansion(int threshold, ForkJoinPool pool) {
+		this.parallelThreshold = threshold;
+		this.parallelPool = pool;
+	}
+	
+	/**
+	 * Maximum number of sibling nodes expanded by one task of the parallel expansion.
+	 * Zero when the object graphs are expanded on demand.
+	 */
+	int getParallelThreshold() {
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Pool of the parallel expansion
+	 */
+	ForkJoinPool getParallelPool() {
+		return parallelPool;
+	}
+	
+	/**
+	 * Get the adapter of a collection class.<br/>
+	 * The adapters registered in context take precedence over the adapter of the predicate.
+	 * @param cls Runtime class of the collection
+	 * @return The adapter, or <code>null</code> if the collection is not supported
+	 */
+	public CollectionAdapter getCollectionAdapter(Class<?> cls) {
+		for (CollectionAdapter adapter : collectionAdapters) {
+			if (adapter.supports(cls)) {
+				return adapter;
+			}
+		}
+		return predicate.getCollectionAdapter(cls);
+	}
+	
+	/**
+	 * Determine if a class is a collection, by the predicate or by a registered adapter
+	 * @param cls Runtime class of the value
+	 */
+	boolean isCollection(Class<?> cls) {
+		if (predicate.isCollection(cls)) {
+			return true;
+		}
+		for (CollectionAdapter adapter : collectionAdapters) {
+			if (adapter.supports(cls)) {
 				return true;
 			}
 		}
 		return false;
 	}
 	
+	/**
+	 * Get the items of a collection
+	 * @param collection The collection
+	 * @return Items of the collection, read through its adapter
+	 */
+	CollectionValues values(Object collection) {
+		CollectionAdapter adapter = getCollectionAdapter(collection.getClass());
+		if (adapter == null) {
+			throw new ObjectGraphException("The collection of type " + collection.getClass() + " not supported");
+		}
+		return new CollectionValues(collection, adapter);
+	}
+	
+	/**
+	 * Get the compiled rule of a path
+	 * @param name Path, relative to root or not
+	 * @return Rule of the path. Never <code>null</code>
+	 */
+	PathRule rule(String name) {
+		return rules.find(name);
+	}
+	
 	/**
 	 * Check if a property is included in context.
 	 * @param name Property name. Ever relative to root path
 	 * @return <code>true</code> if property is included or <code>false</code> otherwise.
 	 */
 	public boolean included(String name, boolean isPrimitive) {
-		String nameNorm = removeCollectionReferenceFromPath(normalizePath(name));
-		NodePath rootedName = NodePath.create(nameNorm);
-		if (isIncluded(rootedName)) {
+		PathRules rules = this.rules;
+		return included(rules.findParent(name), rules.find(name), isPrimitive);
+	}
+	
+	/**
+	 * Check if a property is included in context.
+	 * @param parent Rule of the node that owns the property
+	 * @param rule Rule of the property
+	 */
+	boolean included(PathRule parent, PathRule rule, boolean isPrimitive) {
+		if (rule.isIncluded()) {
 			return true;
 		}
 		if (isPrimitive) {
-			NodePath parent = rootedName.getParent();
-			if (parent == null) {
-				parent = NodePath.create(Node.ROOT_NODE);
-			}
-			String parentPath = parent.getPath();
-			boolean autoIncludePrimitive = autoIncludePrimitives(parentPath);
-			if (autoIncludePrimitive && (parentPath.equals(Node.ROOT_NODE) || includes.contains(parentPath))) {
-				return true;
-			}
+			return parent.autoIncludePrimitives() && (parent.isRoot() || parent.isIncludedExact());
 		}
 		return false;
 	}
-	
-	private String removeCollectionReferenceFromPath(String path) {
-		Matcher matcher = COLLECTION_NOTATION_IN_EXPR.matcher(path);
-		if (matcher.find()) {
-			return matcher.replaceAll("");
+
+	/**
+	 * Get the expansion plan of an object of a given class, at the position of a rule
+	 * @param rule Rule of the node being expanded
+	 * @param isRootChild Determine whether the children are root node children
+	 * @param cls Runtime class of the object
+	 * @return The expansion plan, computed once by rule and class
+	 */
+	ExpansionPlan plan(PathRule rule, boolean isRootChild, Class<?> cls) {
+		//nothing is included below paths that are not in context
+		if (rule == PathRule.NONE || rule == PathRule.EXCLUDED) {
+			return ExpansionPlan.EMPTY;
 		}
-		return path;
+		ConcurrentMap<Class<?>, ExpansionPlan> plans = rule.plans(isRootChild);
+		ExpansionPlan plan = plans.get(cls);
+		if (plan == null) {
+			plan = ExpansionPlan.create(cls, rule, isRootChild, this);
+			ExpansionPlan existing = plans.putIfAbsent(cls, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
 	}
 
 	String normalizePath(String path) {
@@ -129,24 +265,18 @@ public class ObjectGraphContext {
 	}
 
 	public boolean excluded(String name, boolean isPrimitive, boolean isRootChild) {
-		String nameNorm = removeCollectionReferenceFromPath(normalizePath(name));
-		NodePath rootedName = NodePath.create(nameNorm);
-		for (String excluedPath : excludes) {
-			//all root primitives
-			if (excluedPath.equals(ObjectGraphHelper.EXPR_EXCLUDE_ALL_PRIMITIVES_FROM_ROOT) && isPrimitive && isRootChild) {
-				return true;
-			}
-			String fullPath = normalizePath(excluedPath);
-			NodePath rootedPath = NodePath.create(fullPath);
-			if (rootedName.isSame(rootedPath)) {
-				return true;
-			} else if (rootedPath.getNode().equals("*")) {
-				if (rootedPath.getParent() != null && rootedName.isSame(rootedPath.getParent())) {
-					return true;
-				}
-			}
+		return excluded(rules.find(name), isPrimitive, isRootChild);
+	}
+	
+	/**
+	 * Check if a property is excluded from context.
+	 * @param rule Rule of the property
+	 */
+	boolean excluded(PathRule rule, boolean isPrimitive, boolean isRootChild) {
+		if (isPrimitive && isRootChild && rules.isExcludeAllPrimitivesFromRoot()) {
+			return true;
 		}
-		return false;
+		return rule.isExcluded();
 	}
 	
 }
@@ -1,9 +1,10 @@
 package br.com.binarti.sjog;
 
+import java.util.AbstractMap;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.List;
+import java.util.Map;
 
 public final class ObjectGraphHelper {
 	
@@ -30,30 +31,78 @@ public final class ObjectGraphHelper {
 		return Collection.class.isAssignableFrom(cls) || (cls.isArray() && !likePrimitive(cls));
 	}
 	
-	@SuppressWarnings("unchecked")
+	/**
+	 * Get the number of items of a collection.<br/>
+	 * Only the built-in collections are supported: arrays, primitive arrays and {@link Collection}s.
+	 * Iterables, streams and iterators are read only by graphs with a registered adapter, see {@link CollectionAdapters}.
+	 * @throws ObjectGraphException If the value is not a built-in collection
+	 */
 	public static int getCollectionSize(Object collection) {
 		if (collection == null) {
 			return 0;
 		}
-		if (collection instanceof Collection) {
-			return ((Collection<Object>) collection).size();
-		} else if (collection.getClass().isArray()) {
-			return ((Object[]) collection).length;
+		if (PrimitiveValues.isPrimitiveArray(collection)) {
+			return PrimitiveValues.length(collection);
 		}
-		throw new ObjectGraphException("The class type " + collection.getClass() + " is not a collection");
+		CollectionAdapter adapter = CollectionAdapters.find(collection.getClass());
+		if (adapter == null) {
+			throw new ObjectGraphException("The class type " + collection.getClass() + " is not a collection");
+		}
+		return new CollectionValues(collection, adapter).size();
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Get an item of a collection by index.<br/>
+	 * Only the built-in collections are supported, like {@link #getCollectionSize(Object)}.
+	 * @throws ObjectGraphException If the value is not a built-in collection
+	 */
 	public static Object getCollectonItem(Object value, int i) {
 		if (value == null) {
 			return null;
 		}
-		if (value instanceof List) {
-			return ((List<Object>) value).get(i);
-		} else if (value.getClass().isArray()) {
-			return ((Object[]) value)[i];
+		if (PrimitiveValues.isPrimitiveArray(value)) {
+			if (i < 0 || i >= PrimitiveValues.length(value)) {
+				throw new IndexOutOfBoundsException("Index: " + i);
+			}
+			return PrimitiveValues.get(value, i);
+		}
+		CollectionAdapter adapter = CollectionAdapters.find(value.getClass());
+		if (adapter == null) {
+			throw new ObjectGraphException("The collection of type " + value.getClass() + " is not supported");
+		}
+		CollectionValues values = new CollectionValues(value, adapter);
+		if (!values.contains(i)) {
+			throw new IndexOutOfBoundsException("Index: " + i);
+		}
+		return values.get(i);
+	}
+	
+	/**
+	 * Find an entry of a map by the key of a path, like <code>1</code> in <code>map['1']</code>.<br/>
+	 * The key is looked up with {@link Map#get(Object)}. When it is not found and the keys of the map are not strings,
+	 * the entries are matched by <code>String.valueOf(key)</code>, the name given to the entry nodes.
+	 * @param map The map
+	 * @param key Key of the path
+	 * @return The entry, or <code>null</code> if the map has no entry with the key
+	 */
+	static Map.Entry<?, ?> findEntry(Map<?, ?> map, String key) {
+		try {
+			Object value = map.get(key);
+			if (value != null || map.containsKey(key)) {
+				return new AbstractMap.SimpleImmutableEntry<>(key, value);
+			}
+		} catch (ClassCastException e) {
+			//sorted maps of keys not comparable to strings
+		}
+		if (map.isEmpty() || map.keySet().iterator().next() instanceof String) {
+			return null;
+		}
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (!(entry.getKey() instanceof String) && String.valueOf(entry.getKey()).equals(key)) {
+				return entry;
+			}
 		}
-		throw new ObjectGraphException("The collection of type " + value.getClass() + " is not supported");
+		return null;
 	}
 	
 }
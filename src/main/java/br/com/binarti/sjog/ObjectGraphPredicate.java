@@ -8,4 +8,13 @@ public interface ObjectGraphPredicate {
 	
 	boolean isCollection(Class<?> cls);
 	
+	/**
+	 * Get the adapter used to access the items of a collection class
+	 * @param cls Runtime class of a collection, see {@link #isCollection(Class)}
+	 * @return The adapter, or <code>null</code> if the collection is not supported
+	 */
+	default CollectionAdapter getCollectionAdapter(Class<?> cls) {
+		return CollectionAdapters.find(cls);
+	}
+	
 }
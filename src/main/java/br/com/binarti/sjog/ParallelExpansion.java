@@ -0,0 +1,58 @@
+package br.com.binarti.sjog;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Expand all nodes of an object graph in a fork/join pool.<br/>
+ * Sibling nodes are split into tasks when there are more siblings than the threshold, so large collections and
+ * wide objects are expanded by many threads. The order of the children does not depend on the threads, because
+ * children are ordered by the expansion plan or by the index of the collection items.
+ *
+ * @author francofabio
+ *
+ */
+final class ParallelExpansion extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Node> nodes;
+	private final int from;
+	private final int to;
+	private final int threshold;
+
+	private ParallelExpansion(List<Node> nodes, int from, int to, int threshold) {
+		this.nodes = nodes;
+		this.from = from;
+		this.to = to;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Expand a node and all its descendants
+	 * @param node The node
+	 * @param threshold Maximum number of sibling nodes expanded by one task
+	 * @param pool Pool of the tasks
+	 */
+	static void expand(Node node, int threshold, ForkJoinPool pool) {
+		List<Node> children = node.childrenForExpansion();
+		pool.invoke(new ParallelExpansion(children, 0, children.size(), threshold));
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from > threshold) {
+			int middle = (from + to) >>> 1;
+			invokeAll(new ParallelExpansion(nodes, from, middle, threshold), new ParallelExpansion(nodes, middle, to, threshold));
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			List<Node> children = nodes.get(i).childrenForExpansion();
+			if (!children.isEmpty()) {
+				new ParallelExpansion(children, 0, children.size(), threshold).compute();
+			}
+		}
+	}
+
+}
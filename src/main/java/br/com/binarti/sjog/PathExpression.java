@@ -0,0 +1,366 @@
+package br.com.binarti.sjog;
+
+import static br.com.binarti.sjog.Node.ROOT_NODE;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A property expression compiled against an object graph context.<br/>
+ * The expression is parsed once and the include/exclude rules of each segment are resolved when compiling.
+ * While evaluating, the property accessor of each segment is bound to the runtime class of the object through an
+ * inline cache, so the same expression can be evaluated against many root objects without building an object graph.<br/>
+ * The result is the same of {@link ObjectGraph#get(String)}: <code>null</code> when any object in the path is
+ * <code>null</code>, <code>IndexOutOfBoundsException</code> for unreachable collection items and
+ * <code>ObjectGraphException</code> for properties not included in the graph.
+ *
+ * <pre>
+ * PathExpression customerName = new ObjectGraphBuilder().include("customer").compile("customer.name");
+ * String name = (String) customerName.get(order);
+ * </pre>
+ *
+ * @author francofabio
+ *
+ */
+public final class PathExpression {
+
+	private final String expression;
+	private final NodePath path;
+	private final ObjectGraphContext context;
+	private final Segment[] segments;
+
+	PathExpression(String expression, ObjectGraphContext context) {
+		this.expression = expression;
+		this.context = context;
+		this.path = NodePath.create(context.normalizePath(expression));
+		this.segments = compile(path, context);
+	}
+
+	private static Segment[] compile(NodePath path, ObjectGraphContext context) {
+		List<Segment> segments = new ArrayList<>();
+		PathRule rule = context.rule(ROOT_NODE);
+		boolean rootPosition = true;
+		for (Iterator<NodePath> it = path.iterator(); it.hasNext();) {
+			NodePath segment = it.next();
+			if (segment.getPath().equals(ROOT_NODE)) {
+				segments.add(new RootSegment(segment));
+				rule = context.rule(ROOT_NODE);
+				rootPosition = true;
+			} else if (segment.isCollectionItem()) {
+				segments.add(new ItemSegment(segment));
+				rootPosition = false;
+			} else if (segment.isMapEntry()) {
+				segments.add(new EntrySegment(segment));
+				rootPosition = false;
+			} else {
+				PathRule childRule = rule.child(segment.getNode());
+				segments.add(new PropertySegment(segment, rule, rootPosition));
+				rule = childRule;
+				rootPosition = false;
+			}
+		}
+		return segments.toArray(new Segment[segments.size()]);
+	}
+
+	/**
+	 * The expression used to compile this path expression
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * The path of this expression, relative to root
+	 */
+	public NodePath getPath() {
+		return path;
+	}
+
+	/**
+	 * Evaluate the expression against a root object
+	 * @param root The root object
+	 * @return Property value
+	 */
+	public Object get(Object root) {
+		if (root == null) {
+			return null;
+		}
+		Object value = root;
+		for (Segment segment : segments) {
+			//For null parent return null value
+			if (value == null) {
+				return null;
+			}
+			value = segment.evaluate(value, root, context);
+		}
+		return value;
+	}
+
+	/**
+	 * Evaluate the expression against a root object, reading the value as <code>int</code> without boxing
+	 * @param root The root object
+	 * @return Property value
+	 * @throws ObjectGraphException If the value is <code>null</code> or can not be read as <code>int</code>
+	 * @see ObjectGraph#getInt(String)
+	 */
+	public int getInt(Object root) {
+		return last().evaluateInt(parent(root, int.class), root, context);
+	}
+
+	/**
+	 * Evaluate the expression against a root object, reading the value as <code>long</code> without boxing
+	 * @param root The root object
+	 * @return Property value
+	 * @throws ObjectGraphException If the value is <code>null</code> or can not be read as <code>long</code>
+	 * @see ObjectGraph#getLong(String)
+	 */
+	public long getLong(Object root) {
+		return last().evaluateLong(parent(root, long.class), root, context);
+	}
+
+	/**
+	 * Evaluate the expression against a root object, reading the value as <code>double</code> without boxing
+	 * @param root The root object
+	 * @return Property value
+	 * @throws ObjectGraphException If the value is <code>null</code> or can not be read as <code>double</code>
+	 * @see ObjectGraph#getDouble(String)
+	 */
+	public double getDouble(Object root) {
+		return last().evaluateDouble(parent(root, double.class), root, context);
+	}
+
+	/**
+	 * Evaluate the expression against a root object, reading the value as <code>boolean</code> without boxing
+	 * @param root The root object
+	 * @return Property value
+	 * @throws ObjectGraphException If the value is <code>null</code> or is not a <code>boolean</code>
+	 * @see ObjectGraph#getBoolean(String)
+	 */
+	public boolean getBoolean(Object root) {
+		return last().evaluateBoolean(parent(root, boolean.class), root, context);
+	}
+
+	private Segment last() {
+		return segments[segments.length - 1];
+	}
+
+	/**
+	 * Evaluate all segments but the last
+	 * @return The object that owns the last segment
+	 */
+	private Object parent(Object root, Class<?> primitive) {
+		Object value = root;
+		for (int i = 0; i < segments.length - 1; i++) {
+			if (value == null) {
+				break;
+			}
+			value = segments[i].evaluate(value, root, context);
+		}
+		if (value == null) {
+			throw new ObjectGraphException("Property " + path.getPath() + " is null and can not be read as " + primitive);
+		}
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "PathExpression [" + expression + "]";
+	}
+
+	private static abstract class Segment {
+		protected final NodePath path;
+
+		Segment(NodePath path) {
+			this.path = path;
+		}
+
+		abstract Object evaluate(Object parent, Object root, ObjectGraphContext context);
+
+		int evaluateInt(Object parent, Object root, ObjectGraphContext context) {
+			return PrimitiveValues.toInt(evaluate(parent, root, context), path.getPath());
+		}
+
+		long evaluateLong(Object parent, Object root, ObjectGraphContext context) {
+			return PrimitiveValues.toLong(evaluate(parent, root, context), path.getPath());
+		}
+
+		double evaluateDouble(Object parent, Object root, ObjectGraphContext context) {
+			return PrimitiveValues.toDouble(evaluate(parent, root, context), path.getPath());
+		}
+
+		boolean evaluateBoolean(Object parent, Object root, ObjectGraphContext context) {
+			return PrimitiveValues.toBoolean(evaluate(parent, root, context), path.getPath());
+		}
+
+		protected void checkCollection(boolean collection) {
+			if (path.isCollection() && !collection) {
+				throw new ObjectGraphException("Property " + path.getNode() + " is not a collection");
+			}
+		}
+	}
+
+	private static final class RootSegment extends Segment {
+		RootSegment(NodePath path) {
+			super(path);
+		}
+
+		@Override
+		Object evaluate(Object parent, Object root, ObjectGraphContext context) {
+			checkCollection(context.isCollection(root.getClass()) || PrimitiveValues.isPrimitiveArray(root));
+			return root;
+		}
+	}
+
+	private static final class ItemSegment extends Segment {
+		ItemSegment(NodePath path) {
+			super(path);
+		}
+
+		@Override
+		Object evaluate(Object parent, Object root, ObjectGraphContext context) {
+			if (PrimitiveValues.isPrimitiveArray(parent)) {
+				return PrimitiveValues.get(parent, checkIndex(parent));
+			}
+			int index = path.getIndex();
+			CollectionValues values = context.values(parent);
+			if (!values.contains(index)) {
+				throw new IndexOutOfBoundsException("Unreachable collection item: " + path.getPath());
+			}
+			return values.get(index);
+		}
+
+		@Override
+		int evaluateInt(Object parent, Object root, ObjectGraphContext context) {
+			if (PrimitiveValues.isPrimitiveArray(parent)) {
+				return PrimitiveValues.getInt(parent, checkIndex(parent), path.getPath());
+			}
+			return super.evaluateInt(parent, root, context);
+		}
+
+		@Override
+		long evaluateLong(Object parent, Object root, ObjectGraphContext context) {
+			if (PrimitiveValues.isPrimitiveArray(parent)) {
+				return PrimitiveValues.getLong(parent, checkIndex(parent), path.getPath());
+			}
+			return super.evaluateLong(parent, root, context);
+		}
+
+		@Override
+		double evaluateDouble(Object parent, Object root, ObjectGraphContext context) {
+			if (PrimitiveValues.isPrimitiveArray(parent)) {
+				return PrimitiveValues.getDouble(parent, checkIndex(parent), path.getPath());
+			}
+			return super.evaluateDouble(parent, root, context);
+		}
+
+		@Override
+		boolean evaluateBoolean(Object parent, Object root, ObjectGraphContext context) {
+			if (PrimitiveValues.isPrimitiveArray(parent)) {
+				return PrimitiveValues.getBoolean(parent, checkIndex(parent), path.getPath());
+			}
+			return super.evaluateBoolean(parent, root, context);
+		}
+
+		private int checkIndex(Object array) {
+			int index = path.getIndex();
+			if (index < 0 || index >= PrimitiveValues.length(array)) {
+				throw new IndexOutOfBoundsException("Unreachable collection item: " + path.getPath());
+			}
+			return index;
+		}
+	}
+
+	private static final class EntrySegment extends Segment {
+		EntrySegment(NodePath path) {
+			super(path);
+		}
+
+		@Override
+		Object evaluate(Object parent, Object root, ObjectGraphContext context) {
+			if (parent instanceof Map) {
+				Map.Entry<?, ?> entry = ObjectGraphHelper.findEntry((Map<?, ?>) parent, path.getKey());
+				if (entry != null) {
+					return entry.getValue();
+				}
+			}
+			throw new ObjectGraphException("Property " + path.getNode() + " not found or not accessible");
+		}
+	}
+
+	private static final class PropertySegment extends Segment {
+		private final PathRule parentRule;
+		private final boolean rootChild;
+		private Binding binding;
+
+		PropertySegment(NodePath path, PathRule parentRule, boolean rootChild) {
+			super(path);
+			this.parentRule = parentRule;
+			this.rootChild = rootChild;
+		}
+
+		@Override
+		Object evaluate(Object parent, Object root, ObjectGraphContext context) {
+			ExpansionPlan.Step step = step(parent, context);
+			Object value = Reflect.invoke(step.getProperty().getAccessor(), parent, path.getPath());
+			if (value == null) {
+				checkCollection(step.isCollectionType() || step.isPrimitive());
+			} else {
+				checkCollection(context.isCollection(value.getClass()) || PrimitiveValues.isPrimitiveArray(value));
+			}
+			return value;
+		}
+
+		@Override
+		int evaluateInt(Object parent, Object root, ObjectGraphContext context) {
+			return Reflect.invokeInt(step(parent, context).getProperty().getAccessor(), parent, path.getPath());
+		}
+
+		@Override
+		long evaluateLong(Object parent, Object root, ObjectGraphContext context) {
+			return Reflect.invokeLong(step(parent, context).getProperty().getAccessor(), parent, path.getPath());
+		}
+
+		@Override
+		double evaluateDouble(Object parent, Object root, ObjectGraphContext context) {
+			return Reflect.invokeDouble(step(parent, context).getProperty().getAccessor(), parent, path.getPath());
+		}
+
+		@Override
+		boolean evaluateBoolean(Object parent, Object root, ObjectGraphContext context) {
+			return Reflect.invokeBoolean(step(parent, context).getProperty().getAccessor(), parent, path.getPath());
+		}
+
+		private ExpansionPlan.Step step(Object parent, ObjectGraphContext context) {
+			ExpansionPlan.Step step = bind(parent.getClass(), context);
+			if (step == null) {
+				throw new ObjectGraphException("Property " + path.getNode() + " not found or not accessible");
+			}
+			return step;
+		}
+
+		/**
+		 * Monomorphic inline cache: the last runtime class seen and its step
+		 */
+		private ExpansionPlan.Step bind(Class<?> cls, ObjectGraphContext context) {
+			Binding binding = this.binding;
+			if (binding == null || binding.cls != cls) {
+				binding = new Binding(cls, context.plan(parentRule, rootChild, cls).step(path.getNode()));
+				this.binding = binding;
+			}
+			return binding.step;
+		}
+	}
+
+	private static final class Binding {
+		private final Class<?> cls;
+		private final ExpansionPlan.Step step;
+
+		Binding(Class<?> cls, ExpansionPlan.Step step) {
+			this.cls = cls;
+			this.step = step;
+		}
+	}
+
+}
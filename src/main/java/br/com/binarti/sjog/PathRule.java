@@ -0,0 +1,236 @@
+package br.com.binarti.sjog;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A node of the compiled include/exclude trie, see {@link PathRules}.<br/>
+ * Each rule represents a property path without collection indexes (<code>$root.itens.id</code> for
+ * <code>$root.itens[0].id</code>). Children are kept in an open addressing table that can be probed with a
+ * region of a string, so walking a path does not allocate.<br/>
+ * Paths that are not in the trie are represented by the shared rules {@link #NONE} and {@link #EXCLUDED}.<br/>
+ * Rules also keep the {@link ExpansionPlan} computed for nodes at its position.
+ *
+ * @author francofabio
+ *
+ */
+final class PathRule {
+
+	/**
+	 * Rule of any path not configured in context
+	 */
+	static final PathRule NONE = new PathRule(null, false);
+
+	/**
+	 * Rule of any path not configured in context, below an excluded path
+	 */
+	static final PathRule EXCLUDED = new PathRule(null, true);
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private final String segment;
+	private boolean root;
+	private boolean included;
+	private boolean includedExact;
+	private boolean excluded;
+	private Boolean autoIncludePrimitives;
+
+	private String[] keys;
+	private PathRule[] children;
+	private int size;
+
+	private final ConcurrentMap<Class<?>, ExpansionPlan> plans = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, ExpansionPlan> rootChildPlans = new ConcurrentHashMap<>();
+
+	PathRule(String segment) {
+		this(segment, false);
+	}
+
+	private PathRule(String segment, boolean excluded) {
+		this.segment = segment;
+		this.excluded = excluded;
+	}
+
+	/**
+	 * Path segment (property name) represented by this rule
+	 */
+	String getSegment() {
+		return segment;
+	}
+
+	/**
+	 * Determine whether this rule represents the root node
+	 */
+	boolean isRoot() {
+		return root;
+	}
+
+	/**
+	 * Determine whether the path is the same, or a parent, of an included path
+	 */
+	boolean isIncluded() {
+		return included;
+	}
+
+	/**
+	 * Determine whether the path was explicitly included
+	 */
+	boolean isIncludedExact() {
+		return includedExact;
+	}
+
+	/**
+	 * Determine whether the path, or one of its parents, was excluded
+	 */
+	boolean isExcluded() {
+		return excluded;
+	}
+
+	/**
+	 * Determine if all primitive properties of the path should be auto included. Default is <code>true</code>.
+	 */
+	boolean autoIncludePrimitives() {
+		return (autoIncludePrimitives == null) ? true : autoIncludePrimitives;
+	}
+
+	/**
+	 * Expansion plans computed for nodes with this rule, by runtime class
+	 * @param isRootChild Determine whether the plans are for children of the root node
+	 */
+	ConcurrentMap<Class<?>, ExpansionPlan> plans(boolean isRootChild) {
+		return isRootChild ? rootChildPlans : plans;
+	}
+
+	void markRoot() {
+		this.root = true;
+	}
+
+	void markIncluded() {
+		this.included = true;
+	}
+
+	void markIncludedExact() {
+		this.includedExact = true;
+	}
+
+	void markExcluded() {
+		this.excluded = true;
+	}
+
+	void setAutoIncludePrimitives(boolean value) {
+		this.autoIncludePrimitives = value;
+	}
+
+	/**
+	 * Mark all descendants of excluded rules as excluded
+	 */
+	void propagateExcluded() {
+		if (children == null) {
+			return;
+		}
+		for (PathRule child : children) {
+			if (child != null) {
+				if (excluded) {
+					child.excluded = true;
+				}
+				child.propagateExcluded();
+			}
+		}
+	}
+
+	/**
+	 * Get the rule of a child path
+	 * @param name Property name
+	 * @return Rule of the child. Never <code>null</code>
+	 */
+	PathRule child(String name) {
+		PathRule child = lookup(name, 0, name.length(), name.hashCode());
+		return (child != null) ? child : unknownChild();
+	}
+
+	/**
+	 * Get the rule of a child path, given as a region of a string
+	 * @param path The string containing the property name
+	 * @param start Start index (inclusive) of the property name
+	 * @param end End index (exclusive) of the property name
+	 * @return Rule of the child. Never <code>null</code>
+	 */
+	PathRule child(String path, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + path.charAt(i);
+		}
+		PathRule child = lookup(path, start, end, hash);
+		return (child != null) ? child : unknownChild();
+	}
+
+	private PathRule unknownChild() {
+		return excluded ? EXCLUDED : NONE;
+	}
+
+	private PathRule lookup(String path, int start, int end, int hash) {
+		if (keys == null) {
+			return null;
+		}
+		int length = end - start;
+		int mask = keys.length - 1;
+		for (int i = spread(hash) & mask; keys[i] != null; i = (i + 1) & mask) {
+			String key = keys[i];
+			if (key.length() == length && path.regionMatches(start, key, 0, length)) {
+				return children[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get or create the rule of a child path. Used only while compiling.
+	 */
+	PathRule getOrCreateChild(String name) {
+		PathRule child = lookup(name, 0, name.length(), name.hashCode());
+		if (child == null) {
+			child = new PathRule(name);
+			put(name, child);
+		}
+		return child;
+	}
+
+	private void put(String name, PathRule child) {
+		if (keys == null) {
+			keys = new String[INITIAL_CAPACITY];
+			children = new PathRule[INITIAL_CAPACITY];
+		} else if ((size + 1) * 2 > keys.length) {
+			String[] oldKeys = keys;
+			PathRule[] oldChildren = children;
+			keys = new String[oldKeys.length * 2];
+			children = new PathRule[oldKeys.length * 2];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					insert(oldKeys[i], oldChildren[i]);
+				}
+			}
+		}
+		insert(name, child);
+		size++;
+	}
+
+	private void insert(String name, PathRule child) {
+		int mask = keys.length - 1;
+		int i = spread(name.hashCode()) & mask;
+		while (keys[i] != null) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = name;
+		children[i] = child;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	@Override
+	public String toString() {
+		return "PathRule [" + segment + "]";
+	}
+
+}
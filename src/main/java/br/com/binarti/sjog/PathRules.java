@@ -0,0 +1,194 @@
+package br.com.binarti.sjog;
+
+import static br.com.binarti.sjog.Node.ROOT_NODE;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Include, exclude and auto include primitives configuration of a context, compiled into a trie of {@link PathRule}.<br/>
+ * Collection indexes and map keys are ignored, so <code>itens[0].id</code> and <code>itens.id</code> resolve to the same rule,
+ * like <code>prices['EUR'].amount</code> and <code>prices.amount</code>.
+ * After compiling, a decision is a walk of one hash probe per path segment, without string or regex allocation.
+ *
+ * @author francofabio
+ *
+ */
+final class PathRules {
+
+	private final PathRule top;
+	private final PathRule root;
+	private final boolean excludeAllPrimitivesFromRoot;
+
+	private PathRules(PathRule top, PathRule root, boolean excludeAllPrimitivesFromRoot) {
+		this.top = top;
+		this.root = root;
+		this.excludeAllPrimitivesFromRoot = excludeAllPrimitivesFromRoot;
+	}
+
+	/**
+	 * Compile the configuration of a context
+	 * @param includes Normalized included paths
+	 * @param excludes Normalized excluded paths
+	 * @param autoIncludePrimitives Auto include primitives flags by normalized path
+	 * @return Compiled rules
+	 */
+	static PathRules compile(Set<String> includes, Set<String> excludes, Map<String, Boolean> autoIncludePrimitives) {
+		PathRule top = new PathRule(null);
+		PathRule root = top.getOrCreateChild(ROOT_NODE);
+		root.markRoot();
+		for (String include : includes) {
+			PathRule rule = top;
+			boolean indexed = false;
+			for (Iterator<NodePath> it = NodePath.create(include).iterator(); it.hasNext();) {
+				NodePath segment = it.next();
+				if (segment.isCollectionItem() || segment.isMapEntry()) {
+					indexed = true;
+					continue;
+				}
+				rule = rule.getOrCreateChild(segment.getNode());
+				rule.markIncluded();
+			}
+			if (!indexed) {
+				rule.markIncludedExact();
+			}
+		}
+		boolean excludeAllPrimitivesFromRoot = false;
+		for (String exclude : excludes) {
+			if (exclude.equals(ObjectGraphHelper.EXPR_EXCLUDE_ALL_PRIMITIVES_FROM_ROOT)) {
+				excludeAllPrimitivesFromRoot = true;
+				continue;
+			}
+			PathRule rule = top;
+			for (Iterator<NodePath> it = NodePath.create(exclude).iterator(); it.hasNext();) {
+				NodePath segment = it.next();
+				if (segment.isCollectionItem() || segment.isMapEntry()) continue;
+				//'node.*' excludes the node and all its children, like 'node'
+				if (!it.hasNext() && segment.getNode().equals("*") && rule != top) break;
+				rule = rule.getOrCreateChild(segment.getNode());
+			}
+			rule.markExcluded();
+		}
+		for (Entry<String, Boolean> entry : autoIncludePrimitives.entrySet()) {
+			//paths with collection index never match a node parent
+			if (entry.getKey().indexOf('[') >= 0) continue;
+			PathRule rule = top;
+			for (Iterator<NodePath> it = NodePath.create(entry.getKey()).iterator(); it.hasNext();) {
+				rule = rule.getOrCreateChild(it.next().getNode());
+			}
+			rule.setAutoIncludePrimitives(entry.getValue());
+		}
+		top.propagateExcluded();
+		return new PathRules(top, root, excludeAllPrimitivesFromRoot);
+	}
+
+	/**
+	 * Rule of the root node
+	 */
+	PathRule root() {
+		return root;
+	}
+
+	/**
+	 * Determine whether all primitive children of the root node are excluded
+	 */
+	boolean isExcludeAllPrimitivesFromRoot() {
+		return excludeAllPrimitivesFromRoot;
+	}
+
+	/**
+	 * Find the rule of a path. The path can be relative to root, and can contain collection indexes.
+	 * @param path The path
+	 * @return Rule of the path. Never <code>null</code>
+	 */
+	PathRule find(String path) {
+		return walk(path, path.length());
+	}
+
+	/**
+	 * Find the rule of the parent of a path.
+	 * @param path The path
+	 * @return Rule of the parent path. Never <code>null</code>
+	 */
+	PathRule findParent(String path) {
+		int lastDot = lastSeparator(path);
+		if (lastDot < 0) {
+			return path.startsWith(ROOT_NODE) ? top : root;
+		}
+		return walk(path, lastDot);
+	}
+
+	private PathRule walk(String path, int end) {
+		PathRule rule = path.startsWith(ROOT_NODE) ? top : root;
+		int start = 0;
+		while (start < end) {
+			int dot = nextSeparator(path, start, end);
+			rule = rule.child(path, start, stripCollectionIndexes(path, start, dot));
+			start = dot + 1;
+		}
+		return rule;
+	}
+
+	/**
+	 * Find the next separator of a path, ignoring dots inside map keys
+	 * @return Position of the separator, or the end of the path
+	 */
+	private static int nextSeparator(String path, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = path.charAt(i);
+			if (c == '.') {
+				return i;
+			}
+			if (c == '[' && i + 1 < end && isQuote(path.charAt(i + 1))) {
+				int close = path.indexOf(path.charAt(i + 1), i + 2);
+				if (close < 0) {
+					return end;
+				}
+				i = close;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Find the last separator of a path, ignoring dots inside map keys
+	 * @return Position of the separator, or -1 if the path has a single segment
+	 */
+	private static int lastSeparator(String path) {
+		int last = -1;
+		for (int dot = nextSeparator(path, 0, path.length()); dot < path.length(); dot = nextSeparator(path, dot + 1, path.length())) {
+			last = dot;
+		}
+		return last;
+	}
+
+	private static boolean isQuote(char c) {
+		return c == '\'' || c == '"';
+	}
+
+	/**
+	 * Remove trailing collection indexes, like <code>[0]</code>, and map keys, like <code>['key']</code>, from a path segment
+	 * @return The end index of the segment without collection indexes and map keys
+	 */
+	private static int stripCollectionIndexes(String path, int start, int end) {
+		while (end - start > 2 && path.charAt(end - 1) == ']') {
+			int key = NodePath.mapKeyStart(path, start, end);
+			if (key >= 0) {
+				end = key;
+				continue;
+			}
+			int i = end - 2;
+			while (i > start && Character.isDigit(path.charAt(i))) {
+				i--;
+			}
+			if (i == end - 2 || path.charAt(i) != '[') {
+				break;
+			}
+			end = i;
+		}
+		return end;
+	}
+
+}
@@ -0,0 +1,162 @@
+package br.com.binarti.sjog;
+
+import java.lang.reflect.Array;
+
+/**
+ * Typed reads of primitive values and primitive array items, without boxing.<br/>
+ * Values are converted with the Java widening primitive conversions, so a <code>short</code> can be read
+ * as <code>int</code> and an <code>int</code> as <code>long</code> or <code>double</code>, but not the opposite.
+ *
+ * @author francofabio
+ *
+ */
+final class PrimitiveValues {
+
+	private PrimitiveValues() {
+	}
+
+	/**
+	 * Determine if a value is an array of a primitive type, like <code>int[]</code>
+	 */
+	static boolean isPrimitiveArray(Object value) {
+		return value != null && value.getClass().isArray() && value.getClass().getComponentType().isPrimitive();
+	}
+
+	/**
+	 * Determine if a value of a given type can be read as a primitive type.
+	 * @param type Type of the value, primitive or wrapper
+	 * @param primitive Primitive type to read
+	 */
+	static boolean isConvertible(Class<?> type, Class<?> primitive) {
+		Class<?> unwrapped = unwrap(type);
+		if (unwrapped == null) {
+			return false;
+		}
+		if (unwrapped == primitive) {
+			return true;
+		}
+		if (primitive == boolean.class || unwrapped == boolean.class) {
+			return false;
+		}
+		return rank(unwrapped) <= rank(primitive) && !(unwrapped == char.class && rank(primitive) < rank(int.class));
+	}
+
+	private static Class<?> unwrap(Class<?> type) {
+		if (type.isPrimitive()) {
+			return (type == void.class) ? null : type;
+		}
+		if (type == Integer.class) return int.class;
+		if (type == Long.class) return long.class;
+		if (type == Double.class) return double.class;
+		if (type == Boolean.class) return boolean.class;
+		if (type == Float.class) return float.class;
+		if (type == Short.class) return short.class;
+		if (type == Byte.class) return byte.class;
+		if (type == Character.class) return char.class;
+		return null;
+	}
+
+	private static int rank(Class<?> primitive) {
+		if (primitive == byte.class) return 0;
+		if (primitive == short.class || primitive == char.class) return 1;
+		if (primitive == int.class) return 2;
+		if (primitive == long.class) return 3;
+		if (primitive == float.class) return 4;
+		return 5;
+	}
+
+	/**
+	 * Number of items of a primitive array
+	 */
+	static int length(Object array) {
+		return Array.getLength(array);
+	}
+
+	/**
+	 * Item of a primitive array, boxed
+	 */
+	static Object get(Object array, int index) {
+		return Array.get(array, index);
+	}
+
+	static int getInt(Object array, int index, String path) {
+		if (array instanceof int[]) {
+			return ((int[]) array)[index];
+		}
+		checkConvertible(array.getClass().getComponentType(), int.class, path);
+		return Array.getInt(array, index);
+	}
+
+	static long getLong(Object array, int index, String path) {
+		if (array instanceof long[]) {
+			return ((long[]) array)[index];
+		}
+		checkConvertible(array.getClass().getComponentType(), long.class, path);
+		return Array.getLong(array, index);
+	}
+
+	static double getDouble(Object array, int index, String path) {
+		if (array instanceof double[]) {
+			return ((double[]) array)[index];
+		}
+		checkConvertible(array.getClass().getComponentType(), double.class, path);
+		return Array.getDouble(array, index);
+	}
+
+	static boolean getBoolean(Object array, int index, String path) {
+		if (array instanceof boolean[]) {
+			return ((boolean[]) array)[index];
+		}
+		throw cannotRead(array.getClass().getComponentType(), boolean.class, path);
+	}
+
+	/**
+	 * Read a boxed value as <code>int</code>
+	 */
+	static int toInt(Object value, String path) {
+		checkConvertible(value, int.class, path);
+		return (value instanceof Character) ? (Character) value : ((Number) value).intValue();
+	}
+
+	/**
+	 * Read a boxed value as <code>long</code>
+	 */
+	static long toLong(Object value, String path) {
+		checkConvertible(value, long.class, path);
+		return (value instanceof Character) ? (Character) value : ((Number) value).longValue();
+	}
+
+	/**
+	 * Read a boxed value as <code>double</code>
+	 */
+	static double toDouble(Object value, String path) {
+		checkConvertible(value, double.class, path);
+		return (value instanceof Character) ? (Character) value : ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Read a boxed value as <code>boolean</code>
+	 */
+	static boolean toBoolean(Object value, String path) {
+		checkConvertible(value, boolean.class, path);
+		return (Boolean) value;
+	}
+
+	private static void checkConvertible(Object value, Class<?> primitive, String path) {
+		if (value == null) {
+			throw new ObjectGraphException("Property " + path + " is null and can not be read as " + primitive);
+		}
+		checkConvertible(value.getClass(), primitive, path);
+	}
+
+	private static void checkConvertible(Class<?> type, Class<?> primitive, String path) {
+		if (!isConvertible(type, primitive)) {
+			throw cannotRead(type, primitive, path);
+		}
+	}
+
+	private static ObjectGraphException cannotRead(Class<?> type, Class<?> primitive, String path) {
+		return new ObjectGraphException("Property " + path + " of type " + type.getName() + " can not be read as " + primitive);
+	}
+
+}
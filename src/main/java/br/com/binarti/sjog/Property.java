@@ -0,0 +1,58 @@
+package br.com.binarti.sjog;
+
+import java.lang.reflect.Method;
+
+/**
+ * A readable property of a class: name, getter, declared type and the accessor bound to the getter.
+ *
+ * @author francofabio
+ *
+ */
+final class Property {
+
+	private final String name;
+	private final Method getter;
+	private final Class<?> type;
+	private final PropertyAccessor accessor;
+
+	Property(Method getter) {
+		this.name = Reflect.propertyName(getter).intern();
+		this.getter = getter;
+		this.type = getter.getReturnType();
+		this.accessor = new PropertyAccessor(getter);
+	}
+
+	/**
+	 * Property name, interned
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Getter method of the property
+	 */
+	Method getGetter() {
+		return getter;
+	}
+
+	/**
+	 * Declared (return) type of the getter
+	 */
+	Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * Accessor bound to the getter
+	 */
+	PropertyAccessor getAccessor() {
+		return accessor;
+	}
+
+	@Override
+	public String toString() {
+		return "Property [" + name + "]";
+	}
+
+}
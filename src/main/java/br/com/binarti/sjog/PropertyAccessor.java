@@ -0,0 +1,113 @@
+package br.com.binarti.sjog;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Accessor for a property getter, bound once to a <code>MethodHandle</code>.<br/>
+ * The handle is adapted to <code>(Object)Object</code> so it can be invoked without argument arrays
+ * and inlined by the JIT. When the getter can not be bound (e.g. inaccessible module), the accessor
+ * falls back to reflective invocation.<br/>
+ * Getters of primitive and wrapper types are also adapted to typed handles, like <code>(Object)int</code>, so
+ * typed reads do not box the value.
+ *
+ * @author francofabio
+ *
+ */
+final class PropertyAccessor {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private final Method method;
+	private final MethodHandle handle;
+	private final MethodHandle rawHandle;
+	//typed handles by primitive type, created on demand
+	private volatile MethodHandle intHandle;
+	private volatile MethodHandle longHandle;
+	private volatile MethodHandle doubleHandle;
+	private volatile MethodHandle booleanHandle;
+
+	PropertyAccessor(Method method) {
+		this.method = method;
+		this.rawHandle = bind(method);
+		this.handle = convert(rawHandle, GETTER_TYPE);
+	}
+
+	private static MethodHandle bind(Method method) {
+		try {
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method);
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Adapt a bound getter to another type
+	 * @return The adapted handle, or <code>null</code> if the getter is not bound or can not be adapted, like
+	 * static methods and methods with parameters
+	 */
+	private static MethodHandle convert(MethodHandle rawHandle, MethodType type) {
+		if (rawHandle == null) {
+			return null;
+		}
+		try {
+			return rawHandle.asType(type);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Getter method bound by this accessor
+	 */
+	Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * Invoke the getter on the target object
+	 * @param target The object that owns the property
+	 * @return The property value
+	 * @throws Throwable Any exception thrown by the getter
+	 */
+	Object get(Object target) throws Throwable {
+		if (handle == null) {
+			return method.invoke(target);
+		}
+		return (Object) handle.invokeExact(target);
+	}
+
+	/**
+	 * Get a handle that invokes the getter and returns a primitive type, like <code>(Object)int</code>
+	 * @param primitive The primitive type: <code>int</code>, <code>long</code>, <code>double</code> or <code>boolean</code>
+	 * @return The typed handle, or <code>null</code> if the getter type can not be read as the primitive type
+	 * without boxing
+	 */
+	MethodHandle typed(Class<?> primitive) {
+		if (primitive == int.class) {
+			MethodHandle typed = intHandle;
+			return (typed != null) ? typed : (intHandle = adapt(int.class));
+		} else if (primitive == long.class) {
+			MethodHandle typed = longHandle;
+			return (typed != null) ? typed : (longHandle = adapt(long.class));
+		} else if (primitive == double.class) {
+			MethodHandle typed = doubleHandle;
+			return (typed != null) ? typed : (doubleHandle = adapt(double.class));
+		} else if (primitive == boolean.class) {
+			MethodHandle typed = booleanHandle;
+			return (typed != null) ? typed : (booleanHandle = adapt(boolean.class));
+		}
+		return null;
+	}
+
+	private MethodHandle adapt(Class<?> primitive) {
+		if (!PrimitiveValues.isConvertible(method.getReturnType(), primitive)) {
+			return null;
+		}
+		return convert(rawHandle, MethodType.methodType(primitive, Object.class));
+	}
+
+}
@@ -1,20 +1,16 @@
 package br.com.binarti.sjog;
 
 import java.beans.Introspector;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Reflect {
 
-	private static final Map<String, List<Method>> cachedMethods = new HashMap<>();
-	private static final Pattern GETTER_METHOD_PATTERN = Pattern.compile("^get[\\p{Upper}]{1}.*$|^is[\\p{Upper}]{1}.*$");
 	private static final Pattern EXTRACT_PROPERTY_NAME_PATTERN = Pattern.compile("^get([\\p{Upper}]{1}.*)$|^is([\\p{Upper}]{1}.*)$");
 	
 	private Class<?> cls;
@@ -28,65 +24,22 @@ public class Reflect {
 	}
 	
 	public List<Method> getters() {
-		String gettersCacheKey = cls.getName() + ".getters";
-		List<Method> getters = cachedMethods.get(gettersCacheKey);
-		if (getters == null) {
-			getters = new ArrayList<>();
-			List<Method> methods = methods();
-			for (Method method : methods) {
-				String name = method.getName();
-				if (name.equals("getClass")) continue;
-				Matcher matcher = GETTER_METHOD_PATTERN.matcher(name);
-				if (matcher.find()) {
-					getters.add(method);
-				}
-			}
-			removeOverridden(getters);
-			cachedMethods.put(gettersCacheKey, getters);
-		}
-		return getters;
-	}
-	
-	private int findMethod(List<Method> methods, Method method, int exceptIndex) {
-		for (int i = 0; i < methods.size(); i++) {
-			Method m = methods.get(i);
-			if (m.getName().equals(method.getName()) && Arrays.equals(m.getParameterTypes(), method.getParameterTypes())) {
-				if (i != exceptIndex) {
-					return i;
-				}
-			}
-		}
-		return -1;
-	}
-	
-	private boolean isOverridden(Method m1, Method m2) {
-		Class<?> declaredClassM1 = m1.getDeclaringClass();
-		Class<?> declaredClassM2 = m2.getDeclaringClass();
-		return declaredClassM2.isAssignableFrom(declaredClassM1);
-	}
-	
-	private void removeOverridden(List<Method> methods) {
-		List<Integer> indexToRemove = new ArrayList<>();
-		List<Method> clone = new ArrayList<>(methods);
-		for (int i = 0; i < clone.size(); i++) {
-			if (indexToRemove.contains(i)) continue;
-			Method m = clone.get(i);
-			int indexFound = findMethod(clone, m, i);
-			if (indexFound > -1) {
-				if (isOverridden(m, clone.get(indexFound))) {
-					indexToRemove.add(indexFound);
-				}
-			}
-		}
-		if (!indexToRemove.isEmpty()) {
-			for (Integer index : indexToRemove) {
-				methods.remove(index.intValue());
-			}
-		}
+		return ClassMetadata.of(cls).getters();
 	}
 
 	public Method getter(String field) {
-		return getters().stream().filter(m -> propertyName(m).equals(field)).findFirst().orElse(null);
+		Property property = ClassMetadata.of(cls).property(field);
+		return (property == null) ? null : property.getGetter();
+	}
+	
+	/**
+	 * Get the accessor bound to the getter of a property
+	 * @param field Property name
+	 * @return The accessor or <code>null</code> if the property has no getter
+	 */
+	PropertyAccessor accessor(String field) {
+		Property property = ClassMetadata.of(cls).property(field);
+		return (property == null) ? null : property.getAccessor();
 	}
 	
 	public static Reflect of(Class<?> cls) {
@@ -126,4 +79,71 @@ public class Reflect {
 		}
 	}
 	
+	static Object invoke(PropertyAccessor accessor, Object obj, String property) {
+		try {
+			return accessor.get(obj);
+		} catch (Throwable e) {
+			throw new ObjectGraphException("Error while getting value of the property " + property, e);
+		}
+	}
+	
+	/**
+	 * Invoke the getter of the property of a node. The path of the node is computed only for the error message.
+	 */
+	static Object invoke(PropertyAccessor accessor, Object obj, Node node) {
+		try {
+			return accessor.get(obj);
+		} catch (Throwable e) {
+			throw new ObjectGraphException("Error while getting value of the property " + node.getPath().getPath(), e);
+		}
+	}
+	
+	static int invokeInt(PropertyAccessor accessor, Object obj, String property) {
+		MethodHandle handle = accessor.typed(int.class);
+		if (handle == null) {
+			return PrimitiveValues.toInt(invoke(accessor, obj, property), property);
+		}
+		try {
+			return (int) handle.invokeExact(obj);
+		} catch (Throwable e) {
+			throw new ObjectGraphException("Error while getting value of the property " + property, e);
+		}
+	}
+	
+	static long invokeLong(PropertyAccessor accessor, Object obj, String property) {
+		MethodHandle handle = accessor.typed(long.class);
+		if (handle == null) {
+			return PrimitiveValues.toLong(invoke(accessor, obj, property), property);
+		}
+		try {
+			return (long) handle.invokeExact(obj);
+		} catch (Throwable e) {
+			throw new ObjectGraphException("Error while getting value of the property " + property, e);
+		}
+	}
+	
+	static double invokeDouble(PropertyAccessor accessor, Object obj, String property) {
+		MethodHandle handle = accessor.typed(double.class);
+		if (handle == null) {
+			return PrimitiveValues.toDouble(invoke(accessor, obj, property), property);
+		}
+		try {
+			return (double) handle.invokeExact(obj);
+		} catch (Throwable e) {
+			throw new ObjectGraphException("Error while getting value of the property " + property, e);
+		}
+	}
+	
+	static boolean invokeBoolean(PropertyAccessor accessor, Object obj, String property) {
+		MethodHandle handle = accessor.typed(boolean.class);
+		if (handle == null) {
+			return PrimitiveValues.toBoolean(invoke(accessor, obj, property), property);
+		}
+		try {
+			return (boolean) handle.invokeExact(obj);
+		} catch (Throwable e) {
+			throw new ObjectGraphException("Error while getting value of the property " + property, e);
+		}
+	}
+	
 }
@@ -82,4 +82,99 @@ public class NodePathTest {
 		assertEquals("id", path.getNode());
 	}
 	
+	@Test
+	public void shouldCreateNodePathFromRootCollectionExpression() {
+		NodePath path = NodePath.create("$root[12].itens[3].id");
+		assertEquals("$root[12].itens[3].id", path.getPath());
+		Iterator<NodePath> it = path.iterator();
+		NodePath root = it.next();
+		assertEquals("$root", root.getNode());
+		assertTrue(root.isCollection());
+		NodePath rootItem = it.next();
+		assertTrue(rootItem.isCollectionItem());
+		assertEquals(12, rootItem.getIndex());
+		assertEquals("itens", it.next().getNode());
+		assertEquals("[3]", it.next().getNode());
+		assertEquals("id", it.next().getNode());
+		assertFalse(it.hasNext());
+	}
+	
+	@Test
+	public void shouldNormalizeCollectionIndex() {
+		NodePath path = NodePath.create("itens[007]");
+		assertEquals("[7]", path.getNode());
+		assertEquals(7, path.getIndex());
+		assertEquals("itens[7]", path.getPath());
+		assertEquals("itens[1000]", NodePath.create("itens[1000]").getPath());
+	}
+	
+	@Test
+	public void shouldNotTreatInvalidIndexAsCollectionItem() {
+		assertFalse(NodePath.create("itens[]").isCollectionItem());
+		assertFalse(NodePath.create("itens[a]").isCollectionItem());
+		assertEquals("itens[a]", NodePath.create("itens[a]").getNode());
+	}
+	
+	@Test
+	public void shouldIgnoreTrailingSeparator() {
+		assertEquals("person.name", NodePath.create("person.name.").getPath());
+		assertEquals("", NodePath.create("").getPath());
+	}
+	
+	@Test(expected = NumberFormatException.class)
+	public void shouldNotAcceptIndexGreaterThanMaxInteger() {
+		NodePath.create("itens[99999999999]");
+	}
+	
+	@Test
+	public void shouldReturnCanonicalNodePath() {
+		NodePath path = NodePath.create("$root.customer.address.city");
+		assertSame(path, NodePath.create("$root.customer.address.city"));
+		assertSame(path.getParent(), NodePath.create("$root.customer.address"));
+		assertSame(path, NodePath.create("$root.customer.address").child("city"));
+		assertSame(NodePath.create("$root.itens[3]"), NodePath.create("$root.itens[3].id").getParent());
+	}
+	
+	@Test
+	public void shouldNotCacheHighCardinalityIndexedPath() {
+		NodePath path = NodePath.create("$root.itens[48213].name");
+		assertEquals("$root.itens[48213].name", path.getPath());
+		assertNotSame(path, NodePath.create("$root.itens[48213].name"));
+		assertEquals(path, NodePath.create("$root.itens[48213].name"));
+		assertSame(NodePath.create("$root"), path.getParent().getParent().getParent());
+	}
+	
+	@Test
+	public void shouldNotDeriveCanonicalChildFromPathCreatedByConstructor() {
+		NodePath path = new NodePath("person.address", null);
+		NodePath child = path.child("city");
+		assertEquals("person.address.city", child.getPath());
+		assertEquals("person", NodePath.create("person.address.city").getParent().getParent().getNode());
+	}
+	
+	@Test
+	public void shouldCreateNodePathWithMapKey() {
+		NodePath path = NodePath.create("product.prices['EUR'].amount");
+		assertEquals("amount", path.getNode());
+		assertEquals("product.prices['EUR'].amount", path.getPath());
+		NodePath entry = path.getParent();
+		assertTrue(entry.isMapEntry());
+		assertFalse(entry.isCollectionItem());
+		assertEquals("EUR", entry.getKey());
+		assertEquals("['EUR']", entry.getNode());
+		assertEquals("prices", entry.getParent().getNode());
+		assertFalse(entry.getParent().isMapEntry());
+	}
+	
+	@Test
+	public void shouldCreateNodePathWithSeparatorInMapKey() {
+		NodePath path = NodePath.create("attributes[\"customer.name\"].length");
+		assertEquals("customer.name", path.getParent().getKey());
+		assertEquals("attributes['customer.name'].length", path.getPath());
+		assertEquals("attributes", path.getParent().getParent().getNode());
+		assertTrue(path.getParent().getParent().isRoot());
+		assertEquals("it's", NodePath.create("notes[\"it's\"]").getKey());
+		assertEquals("[\"it's\"]", NodePath.create("notes[\"it's\"]").getNode());
+	}
+
 }
@@ -1,10 +1,15 @@
 package br.com.binarti.sjog;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import br.com.binarti.sjog.model.Item;
+import br.com.binarti.sjog.model.Order;
+
 public class ObjectGraphContextTest {
 	
 	@Test
@@ -91,4 +96,59 @@ public class ObjectGraphContextTest {
 		assertFalse(context.excluded("pessoa.contatos[0].dado", true, false));
 	}
 	
+	@Test
+	public void shouldExcludeAllChildrenUsingWildcard() {
+		ObjectGraphContext context = new ObjectGraphBuilder()
+				.include("pessoa")
+				.exclude("*")
+				.buildContext();
+		assertTrue(context.excluded("id", true, true));
+		assertTrue(context.excluded("pessoa", false, true));
+		assertTrue(context.excluded("pessoa.nome", true, false));
+	}
+	
+	@Test
+	public void shouldIgnoreCollectionIndexInRules() {
+		ObjectGraphContext context = new ObjectGraphBuilder()
+				.include("pedidos[0].itens")
+				.exclude("pedidos.itens[0].id")
+				.buildContext();
+		assertTrue(context.included("pedidos", false));
+		assertTrue(context.included("pedidos[1].itens", false));
+		assertTrue(context.included("$root.pedidos[1].itens[2]", false));
+		assertFalse(context.included("pedidos[1].cliente", false));
+		assertTrue(context.excluded("pedidos[3].itens[5].id", true, false));
+		assertFalse(context.excluded("pedidos[3].itens[5].nome", true, false));
+	}
+	
+	@Test
+	public void shouldRecompileRulesWhenAutoIncludePrimitivesChanges() {
+		ObjectGraphContext context = new ObjectGraphBuilder()
+				.include("pessoa")
+				.buildContext();
+		assertTrue(context.included("pessoa.nome", true));
+		context.autoIncludePrimitives("$root.pessoa", false);
+		assertFalse(context.autoIncludePrimitives("pessoa"));
+		assertFalse(context.included("pessoa.nome", true));
+		assertTrue(context.included("id", true));
+	}
+	
+	@Test
+	public void shouldReuseExpansionPlanByRuleAndClass() {
+		ObjectGraphContext context = new ObjectGraphBuilder()
+				.include("itens")
+				.exclude("itens.id")
+				.buildContext();
+		PathRule itensRule = context.rule("itens[0]");
+		ExpansionPlan plan = context.plan(itensRule, false, Item.class);
+		assertSame(plan, context.plan(context.rule("itens[1]"), false, Item.class));
+		assertEquals(1, plan.size());
+		assertEquals("productName", plan.step(0).getProperty().getName());
+		assertTrue(plan.step(0).isPrimitive());
+		
+		ExpansionPlan rootPlan = context.plan(context.rule("$root"), true, Order.class);
+		assertEquals(4, rootPlan.size());
+		assertSame(ExpansionPlan.EMPTY, context.plan(context.rule("customer"), false, Order.class));
+	}
+	
 }
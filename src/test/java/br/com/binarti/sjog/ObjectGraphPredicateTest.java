@@ -1,12 +1,23 @@
 package br.com.binarti.sjog;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
@@ -67,6 +78,34 @@ public class ObjectGraphPredicateTest {
 		assertFalse(new DefaultObjectGraphPredicate().isCollection(int[].class));
 		assertTrue(new DefaultObjectGraphPredicate().isCollection(Collection.class));
 		assertTrue(new DefaultObjectGraphPredicate().isCollection(Person[].class));
+		assertFalse(new DefaultObjectGraphPredicate().isCollection(Iterable.class));
+		assertFalse(new DefaultObjectGraphPredicate().isCollection(Iterator.class));
+		assertFalse(new DefaultObjectGraphPredicate().isCollection(Stream.class));
+	}
+	
+	@Test
+	public void shouldFindCollectionAdapter() {
+		assertSame(CollectionAdapters.ARRAY, new DefaultObjectGraphPredicate().getCollectionAdapter(Person[].class));
+		assertSame(CollectionAdapters.RANDOM_ACCESS_LIST, new DefaultObjectGraphPredicate().getCollectionAdapter(ArrayList.class));
+		assertSame(CollectionAdapters.SEQUENTIAL_LIST, new DefaultObjectGraphPredicate().getCollectionAdapter(LinkedList.class));
+		assertSame(CollectionAdapters.SET, new DefaultObjectGraphPredicate().getCollectionAdapter(HashSet.class));
+		assertSame(CollectionAdapters.DEQUE, new DefaultObjectGraphPredicate().getCollectionAdapter(ArrayDeque.class));
+		assertSame(CollectionAdapters.COLLECTION, new DefaultObjectGraphPredicate().getCollectionAdapter(PriorityQueue.class));
+		assertNull(new DefaultObjectGraphPredicate().getCollectionAdapter(Stream.of(1).getClass()));
+		assertNull(new DefaultObjectGraphPredicate().getCollectionAdapter(Person.class));
+	}
+	
+	@Test
+	public void shouldGetItemsOfPrimitiveArrays() {
+		assertEquals(3, ObjectGraphHelper.getCollectionSize(new int[] { 1, 2, 3 }));
+		assertEquals(2, ObjectGraphHelper.getCollectonItem(new int[] { 1, 2, 3 }, 1));
+		assertEquals('b', ObjectGraphHelper.getCollectonItem(new char[] { 'a', 'b' }, 1));
+		assertEquals(2, ObjectGraphHelper.getCollectionSize(Arrays.asList("a", "b")));
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void shouldNotGetInvalidItemOfPrimitiveArray() {
+		ObjectGraphHelper.getCollectonItem(new int[] { 1, 2, 3 }, 3);
 	}
 	
 	private static enum EnhumTest {
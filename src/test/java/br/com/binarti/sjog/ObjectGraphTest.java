@@ -1,26 +1,50 @@
 package br.com.binarti.sjog;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
 import br.com.binarti.sjog.model.Address;
+import br.com.binarti.sjog.model.Bag;
 import br.com.binarti.sjog.model.City;
 import br.com.binarti.sjog.model.Document;
+import br.com.binarti.sjog.model.Invoice;
 import br.com.binarti.sjog.model.Item;
+import br.com.binarti.sjog.model.Member;
 import br.com.binarti.sjog.model.Order;
 import br.com.binarti.sjog.model.Page;
 import br.com.binarti.sjog.model.Person;
+import br.com.binarti.sjog.model.PojoWithAllPrimitivesAndWrappers;
+import br.com.binarti.sjog.model.Price;
+import br.com.binarti.sjog.model.Product;
+import br.com.binarti.sjog.model.Team;
+import br.com.binarti.sjog.model.Telemetry;
 import br.com.binarti.sjog.model.WrapperData;
 import br.com.binarti.sjog.model.events.TableEvent;
 import br.com.binarti.sjog.model.events.WordEvent;
@@ -278,8 +302,8 @@ public class ObjectGraphTest {
 		assertEquals(order.getItens().get(1).getProductName(), orderGraph.get("itensAsArray[1].productName"));
 	}
 
-	@Test(expected = ObjectGraphException.class)
-	public void shouldNotAcceptCollectionDiferentFromListOrArray() {
+	@Test
+	public void shouldGetDataFromSet() {
 		Order order = new Order(129, new Date(), 1650d);
 		order.addItem(new Item(1, "MacBook pro 13"));
 		order.addItem(new Item(2, "iPad Air 2"));
@@ -296,6 +320,76 @@ public class ObjectGraphTest {
 		assertEquals(order.getItens().get(1).getProductName(), orderGraph.get("itensAsSet[1].productName"));
 	}
 
+	@Test
+	public void shouldGetDataFromSequentialCollections() {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 1000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itensAsLinkedList")
+				.include("itensAsDeque")
+				.include("itensAsStream")
+				.collectionAdapter(CollectionAdapters.STREAM)
+				.build(order);
+		for (String collection : Arrays.asList("itensAsLinkedList", "itensAsDeque", "itensAsStream")) {
+			List<Node> items = orderGraph.getNode(collection).getChildren();
+			assertEquals(1000, items.size());
+			for (int i = 0; i < items.size(); i++) {
+				assertEquals(i, items.get(i).getChild("id").getValue());
+			}
+			assertEquals("Product 10", orderGraph.get(collection + "[10].productName"));
+			assertEquals(1000, orderGraph.getCollectionLength(collection));
+		}
+	}
+
+	@Test
+	public void shouldGetDataFromCollectionWithRegisteredAdapter() {
+		Order order = new Order(129, new Date(), 1650d);
+		order.addItem(new Item(1, "MacBook pro 13"));
+		order.addItem(new Item(2, "iPad Air 2"));
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.collectionAdapter(new CollectionAdapter() {
+					@Override
+					public boolean supports(Class<?> cls) {
+						return List.class.isAssignableFrom(cls);
+					}
+
+					@Override
+					public int size(Object collection) {
+						return ((List<?>) collection).size();
+					}
+
+					@Override
+					public Iterator<?> iterator(Object collection) {
+						List<?> reversed = new ArrayList<>((List<?>) collection);
+						Collections.reverse(reversed);
+						return reversed.iterator();
+					}
+				})
+				.include("itens")
+				.build(order);
+		assertEquals("iPad Air 2", orderGraph.get("itens[0].productName"));
+		assertEquals("MacBook pro 13", orderGraph.getNode("itens[1].productName").getValue());
+	}
+
+	@Test
+	public void shouldExpandIterableBeanAsObject() {
+		ObjectGraph bagGraph = new ObjectGraphBuilder().build(new Bag("Fruits", "apple", "orange"));
+		assertFalse(bagGraph.getRoot().isCollection());
+		assertEquals("Fruits", bagGraph.get("label"));
+	}
+
+	@Test
+	public void shouldExpandIterableWithRegisteredAdapter() {
+		ObjectGraph bagGraph = new ObjectGraphBuilder()
+				.collectionAdapter(CollectionAdapters.ITERABLE)
+				.build(new Bag("Fruits", "apple", "orange"));
+		assertTrue(bagGraph.getRoot().isCollection());
+		assertEquals(2, bagGraph.getRoot().getChildren().size());
+		assertEquals("orange", bagGraph.get("[1]"));
+	}
+
 	@Test(expected = IndexOutOfBoundsException.class)
 	public void shouldAccessInvalidCollectionItem() {
 		Order order = new Order(129, new Date(), 1650d);
@@ -709,4 +803,874 @@ public class ObjectGraphTest {
 
 	}
 
+	@Test
+	public void shouldGetPropertyWithoutLoadingSiblings() {
+		Invoice invoice = new Invoice(10, new Person("John Smith", 30));
+		ObjectGraph graph = new ObjectGraphBuilder()
+				.include("customer")
+				.build(invoice);
+		assertEquals(10, graph.get("number"));
+		assertEquals("John Smith", graph.get("customer.name"));
+		assertFalse(graph.getRoot().isExpanded());
+		assertFalse(graph.getNode("$root").isExpanded());
+	}
+
+	@Test
+	public void shouldNotLoadPropertiesWhenNodesAreListed() {
+		Invoice invoice = new Invoice(10, new Person("John Smith", 30));
+		ObjectGraph graph = new ObjectGraphBuilder()
+				.include("customer")
+				.build(invoice);
+		assertEquals(3, graph.getNodes().size());
+		assertNotNull(graph.getNode("notes"));
+		assertTrue(graph.getNode("notes").isPrimitive());
+		assertEquals(10, graph.getNode("number").getValue());
+		assertEquals(2, graph.getNode("customer").getChildren().size());
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldLoadPropertyValueOnDemand() {
+		Invoice invoice = new Invoice(10, new Person("John Smith", 30));
+		ObjectGraph graph = new ObjectGraphBuilder()
+				.include("customer")
+				.build(invoice);
+		graph.getNode("notes").getValue();
+	}
+
+	@Test
+	public void shouldReuseResolvedNodesWhenExpanding() {
+		Order order = new Order(129, new Date(), 1650d);
+		order.addItem(new Item(1, "MacBook pro 13"));
+		order.addItem(new Item(2, "iPad Air 2"));
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itens")
+				.build(order);
+		assertEquals("iPad Air 2", orderGraph.get("itens[1].productName"));
+		Node resolvedItem = orderGraph.getRoot().resolveChild(NodePath.create("itens"));
+		assertFalse(orderGraph.getRoot().isExpanded());
+		assertFalse(resolvedItem.getChild("[1]").isExpanded());
+		assertEquals(4, orderGraph.getNodes().size());
+		assertSame(resolvedItem, orderGraph.getNode("itens"));
+		assertEquals(2, orderGraph.getNode("itens").getChildren().size());
+		assertEquals("iPad Air 2", orderGraph.getNode("itens[1].productName").getValue());
+		assertEquals("MacBook pro 13", orderGraph.get("itens[0].productName"));
+	}
+
+	@Test
+	public void shouldKeepCollectionOrderWhenSorting() {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 1000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itens")
+				.build(order);
+		orderGraph.getRoot().sortByName();
+		Node itens = orderGraph.getNode("itens");
+		assertEquals("[1]", itens.getChildren().get(1).getName());
+		assertEquals("[999]", itens.getChild("[999]").getName());
+		assertEquals(999, itens.getChild("[999]").getChild("id").getValue());
+		assertEquals("Product 2", orderGraph.getNode("itens[2].productName").getValue());
+		assertNull(itens.getChild("[1000]"));
+		assertNull(itens.getChild("id"));
+		assertNull(orderGraph.getNode("unknown"));
+	}
+
+	@Test
+	public void shouldCreateCollectionItemsOnDemand() {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 100000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itens")
+				.build(order);
+		Node itens = orderGraph.getNode("itens");
+		assertEquals(100000, itens.getChildren().size());
+		List<Node> page = itens.getChildren(50000, 10);
+		assertEquals(10, page.size());
+		assertEquals("[50000]", page.get(0).getName());
+		assertEquals("Product 50009", page.get(9).getChild("productName").getValue());
+		assertSame(page.get(0), itens.getChild("[50000]"));
+		assertEquals(2, itens.getChildren(99998, 10).size());
+		assertTrue(itens.getChildren(200000, 10).isEmpty());
+		itens.discardItems();
+		assertEquals("Product 50000", itens.getChild("[50000]").getChild("productName").getValue());
+		assertEquals(100000, orderGraph.getCollectionLength("itens"));
+	}
+
+	@Test
+	public void shouldGetDataFromMapByKey() {
+		Product product = new Product("MacBook pro 13");
+		product.addPrice(new Price(1650d, "USD"));
+		product.addPrice(new Price(1500d, "EUR"));
+		ObjectGraph productGraph = new ObjectGraphBuilder()
+				.include("prices")
+				.build(product);
+		assertEquals(1500d, productGraph.get("prices['EUR'].amount"));
+		assertEquals(1650d, productGraph.get("prices[\"USD\"].amount"));
+		assertEquals("EUR", productGraph.getNode("prices['EUR'].currency").getValue());
+		Node eur = productGraph.getNode("prices['EUR']");
+		assertEquals(2, eur.getChildren().size());
+		Node prices = productGraph.getNode("prices");
+		assertEquals(2, prices.getChildren().size());
+		assertEquals("['USD']", prices.getChildren().get(0).getName());
+		assertSame(eur, prices.getChildren().get(1));
+		assertNull(productGraph.getNode("prices['BRL']"));
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotGetDataFromMapWithoutKey() {
+		Product product = new Product("MacBook pro 13");
+		product.addPrice(new Price(1650d, "USD"));
+		new ObjectGraphBuilder().include("prices").build(product).get("prices['BRL'].amount");
+	}
+
+	@Test
+	public void shouldGetDataFromMapRoot() {
+		Map<String, Object> customer = new HashMap<>();
+		customer.put("name", "John Smith");
+		customer.put("address", Collections.singletonMap("city", "Cariacica"));
+		customer.put("phones", Arrays.asList("5527999999999"));
+		customer.put("notes", null);
+		ObjectGraph graph = new ObjectGraphBuilder().build(customer);
+		assertEquals("John Smith", graph.get("['name']"));
+		assertEquals("Cariacica", graph.get("$root['address']['city']"));
+		assertEquals("5527999999999", graph.get("['phones'][0]"));
+		assertNull(graph.get("['notes']"));
+		assertEquals(4, graph.getNodes().size());
+	}
+
+	@Test
+	public void shouldGetEntriesOfMapWithKeysThatAreNotStrings() {
+		for (Map<Integer, String> numbers : Arrays.<Map<Integer, String>>asList(new HashMap<>(), new TreeMap<>())) {
+			numbers.put(1, "one");
+			numbers.put(2, "two");
+			Map<String, Object> root = new HashMap<>();
+			root.put("m", numbers);
+			ObjectGraph graph = new ObjectGraphBuilder().build(root);
+			assertEquals("one", graph.get("['m']['1']"));
+			assertEquals("one", graph.compile("['m']['1']").get(root));
+			assertEquals(2, graph.getNode("['m']").getChildren().size());
+			assertEquals("one", graph.get("['m']['1']"));
+			assertEquals("two", new ObjectGraphBuilder().build(root).getNode("['m']['2']").getValue());
+			assertNull(graph.getNode("['m']['3']"));
+		}
+	}
+
+	@Test
+	public void shouldFindChildrenOfExpandedObjectByName() {
+		ObjectGraph graph = new ObjectGraphBuilder().build(new PojoWithAllPrimitivesAndWrappers());
+		List<Node> children = graph.getRoot().getChildren();
+		assertEquals(20, children.size());
+		for (Node child : children) {
+			assertSame(child, graph.getRoot().getChild(child.getName()));
+		}
+		assertNull(graph.getRoot().getChild("unknown"));
+		assertNull(graph.getNode("unknown"));
+	}
+
+	@Test
+	public void shouldComputePathsFromParentNodes() {
+		Map<String, Object> customer = new HashMap<>();
+		customer.put("address", Collections.singletonMap("city", "Cariacica"));
+		customer.put("phones", Arrays.asList("5527999999999"));
+		ObjectGraph graph = new ObjectGraphBuilder().build(customer);
+		Node city = graph.getNode("['address']['city']");
+		assertEquals("['city']", city.getName());
+		assertEquals("$root['address']['city']", city.getPath().getPath());
+		Node phone = graph.getNode("['phones'][0]");
+		assertEquals("[0]", phone.getName());
+		assertEquals("$root['phones'][0]", phone.getPath().getPath());
+		assertTrue(phone.isPrimitive());
+		assertTrue(phone.getChildren().isEmpty());
+		assertSame(graph.getRoot(), city.getRoot());
+	}
+
+	@Test
+	public void shouldGetItemsOfPrimitiveArrays() {
+		Telemetry telemetry = new Telemetry((short) 7, new int[] { 10, 20, 30, 40 }, new double[] { 1.5, 2.5 }, new boolean[] { false, true });
+		ObjectGraph graph = new ObjectGraphBuilder().build(telemetry);
+		assertEquals(40, graph.get("scores[3]"));
+		assertEquals(2.5, graph.get("readings[1]"));
+		assertEquals(30, graph.getNode("scores[2]").getValue());
+		assertTrue(graph.getNode("scores").getChildren().isEmpty());
+		assertEquals(40, graph.getInt("scores[3]"));
+		assertEquals(40L, graph.getLong("scores[3]"));
+		assertEquals(1.5, graph.getDouble("readings[0]"), 0);
+		assertEquals(20.0, graph.getDouble("scores[1]"), 0);
+		assertTrue(graph.getBoolean("alarms[1]"));
+		assertEquals('X', graph.getInt("code[1]"));
+		assertEquals(7, graph.getInt("sensor"));
+		assertEquals(4L, graph.getLong("samples"));
+		assertTrue(graph.getBoolean("active"));
+		assertEquals(7.0, graph.getDouble("sensor"), 0);
+	}
+
+	@Test
+	public void shouldGetLengthOfPrimitiveArrays() {
+		Telemetry telemetry = new Telemetry((short) 7, new int[] { 10, 20, 30, 40 }, new double[] { 1.5, 2.5 }, new boolean[] { false, true });
+		ObjectGraph graph = new ObjectGraphBuilder().build(telemetry);
+		assertEquals(4, graph.getCollectionLength("scores"));
+		assertEquals(2, graph.getCollectionLength("readings"));
+		assertEquals(2, graph.getCollectionLength("code"));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void shouldNotGetInvalidItemOfPrimitiveArray() {
+		Telemetry telemetry = new Telemetry((short) 7, new int[] { 10, 20, 30, 40 }, new double[] { 1.5, 2.5 }, new boolean[] { false, true });
+		new ObjectGraphBuilder().build(telemetry).getInt("scores[4]");
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotNarrowPrimitiveValues() {
+		Telemetry telemetry = new Telemetry((short) 7, new int[] { 10, 20, 30, 40 }, new double[] { 1.5, 2.5 }, new boolean[] { false, true });
+		new ObjectGraphBuilder().build(telemetry).getInt("readings[0]");
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotReadNullAsPrimitive() {
+		Person person = new Person("John Smith", 30);
+		new ObjectGraphBuilder().include("address").build(person).getInt("address.zip");
+	}
+
+	private Team createTeam() {
+		Team team = new Team("Platform");
+		Member mentor = new Member("Kane", null, null);
+		team.addMember("John Smith", mentor);
+		team.addMember("Mary Jane", mentor);
+		return team;
+	}
+
+	private int countNodes(Node node) {
+		int count = 1;
+		for (Node child : node.getChildren()) {
+			count += countNodes(child);
+		}
+		return count;
+	}
+
+	@Test
+	public void shouldStopCyclesWithBackReference() {
+		Team team = createTeam();
+		ObjectGraph teamGraph = new ObjectGraphBuilder()
+				.include("members.team.members")
+				.include("members.mentor")
+				.identityMode(IdentityMode.REFERENCE)
+				.build(team);
+		//the team of a member has other rule than the root, so it is not a reference
+		Node memberTeam = teamGraph.getNode("members[0].team");
+		assertFalse(memberTeam.isReference());
+		assertEquals("Mary Jane", teamGraph.get("members[0].team.members[1].name"));
+		assertSame(memberTeam, teamGraph.getNode("members[1].team").getReference());
+		assertTrue(teamGraph.getNode("members[1].team").getChildren().isEmpty());
+		assertFalse(teamGraph.getNode("members[0].mentor").isReference());
+		assertTrue(teamGraph.getNode("members[1].mentor").isReference());
+		assertSame(teamGraph.getNode("members[0].mentor"), teamGraph.getNode("members[1].mentor").getReference());
+		//root, team name, members, first member with team, members of team with names, and mentor with name,
+		//second member with back references to the team and the mentor
+		assertEquals(15, countNodes(teamGraph.getRoot()));
+	}
+
+	@Test
+	public void shouldNotChangeIncludedPropertiesWithIdentityMode() {
+		for (IdentityMode identityMode : IdentityMode.values()) {
+			Address address = new Address(new City("Gotham", "NJ"), "29000");
+			Person spouse = new Person("Mary Jane", 30);
+			spouse.setAddress(address);
+			Person person = new Person("John Smith", 30, spouse);
+			person.setAddress(address);
+			ObjectGraph graph = new ObjectGraphBuilder()
+					.include("address")
+					.include("spouse.address.city")
+					.identityMode(identityMode)
+					.build(person);
+			assertEquals("29000", graph.get("address.zip"));
+			assertEquals("Gotham", graph.get("spouse.address.city.name"));
+			assertNull(graph.getNode("address.city"));
+		}
+	}
+
+	@Test
+	public void shouldShareSubtreeOfSameObject() {
+		Team team = createTeam();
+		ObjectGraph teamGraph = new ObjectGraphBuilder()
+				.include("members.mentor")
+				.identityMode(IdentityMode.SHARE)
+				.build(team);
+		Node firstMentor = teamGraph.getNode("members[0].mentor");
+		assertFalse(firstMentor.isReference());
+		Node secondMentor = teamGraph.getNode("members[1].mentor");
+		assertFalse(firstMentor.isReference());
+		assertSame(firstMentor, secondMentor.getReference());
+		assertSame(firstMentor.getChildren().get(0), secondMentor.getChildren().get(0));
+		assertSame(firstMentor.getChild("name"), secondMentor.getChild("name"));
+		assertEquals("Kane", teamGraph.get("members[1].mentor.name"));
+	}
+
+	@Test
+	public void shouldRefreshOnlyChangedNodes() {
+		Order order = new Order(129, new Date(), 1650d);
+		order.setCustomer(new Person("John Smith", 30));
+		order.addItem(new Item(1, "Product 1"));
+		ObjectGraph orderGraph = new ObjectGraphBuilder().include("itens").include("customer").build(order);
+		Node customer = orderGraph.getNode("customer");
+		Node customerName = orderGraph.getNode("customer.name");
+		Node firstItem = orderGraph.getNode("itens[0]");
+		Node itens = orderGraph.getNode("itens");
+		assertEquals(1, itens.getChildren().size());
+		assertFalse(orderGraph.refresh());
+		order.addItem(new Item(2, "Product 2"));
+		order.getCustomer().setName("Mary Jane");
+		assertTrue(orderGraph.refresh());
+		assertSame(customer, orderGraph.getNode("customer"));
+		assertSame(customerName, orderGraph.getNode("customer.name"));
+		assertEquals("Mary Jane", customerName.getValue());
+		assertSame(firstItem, orderGraph.getNode("itens[0]"));
+		assertEquals(2, itens.getChildren().size());
+		assertEquals("Product 2", orderGraph.get("itens[1].productName"));
+		order.setCustomer(new Person("Kane", 40));
+		assertTrue(orderGraph.refresh());
+		assertSame(customer, orderGraph.getNode("customer"));
+		assertEquals("Kane", orderGraph.getNode("customer.name").getValue());
+		assertFalse(customerName == orderGraph.getNode("customer.name"));
+		assertFalse(orderGraph.refresh());
+	}
+
+	@Test
+	public void shouldRefreshEntriesOfMap() {
+		Product product = new Product("MacBook pro 13");
+		product.addPrice(new Price(1650d, "USD"));
+		product.addPrice(new Price(1500d, "EUR"));
+		ObjectGraph productGraph = new ObjectGraphBuilder().include("prices").build(product);
+		Node usd = productGraph.getNode("prices['USD']");
+		Node eur = productGraph.getNode("prices['EUR']");
+		product.addPrice(new Price(1400d, "EUR"));
+		product.addPrice(new Price(8000d, "BRL"));
+		assertTrue(productGraph.refresh());
+		assertSame(usd, productGraph.getNode("prices['USD']"));
+		assertFalse(eur == productGraph.getNode("prices['EUR']"));
+		assertEquals(1400d, productGraph.get("prices['EUR'].amount"));
+		assertEquals(3, productGraph.getNode("prices").getChildren().size());
+		assertEquals(8000d, productGraph.get("prices['BRL'].amount"));
+	}
+
+	@Test
+	public void shouldRefreshEntriesOfEmptyMap() {
+		Product product = new Product("MacBook pro 13");
+		ObjectGraph productGraph = new ObjectGraphBuilder().include("prices").build(product);
+		assertTrue(productGraph.getNode("prices").getChildren().isEmpty());
+		product.addPrice(new Price(1650d, "USD"));
+		assertTrue(productGraph.refresh());
+		assertEquals(1650d, productGraph.get("prices['USD'].amount"));
+		assertEquals(1, productGraph.getNode("prices").getChildren().size());
+		assertFalse(productGraph.refresh());
+	}
+
+	@Test
+	public void shouldRefreshReferencesOfChangedValue() {
+		Team team = createTeam();
+		ObjectGraph teamGraph = new ObjectGraphBuilder()
+				.include("members.mentor")
+				.identityMode(IdentityMode.REFERENCE)
+				.build(team);
+		Node firstMentor = teamGraph.getNode("members[0].mentor");
+		assertFalse(firstMentor.isReference());
+		Node secondMentor = teamGraph.getNode("members[1].mentor");
+		assertSame(firstMentor, secondMentor.getReference());
+		team.getMembers().get(0).setMentor(new Member("Abel", null, null));
+		assertTrue(teamGraph.refresh());
+		assertEquals("Abel", teamGraph.get("members[0].mentor.name"));
+		assertFalse(secondMentor.isReference());
+		assertEquals("Kane", teamGraph.get("members[1].mentor.name"));
+	}
+
+	private Order createOrder(Date date, String customerName, int items) {
+		Order order = new Order(129, date, 1650d);
+		order.setCustomer(new Person(customerName, 30));
+		for (int i = 0; i < items; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		return order;
+	}
+
+	private List<String> changes(Stream<GraphChange> changes) {
+		List<String> result = new ArrayList<>();
+		changes.forEach(change -> result.add(change.getType() + " " + change.getPath()));
+		Collections.sort(result);
+		return result;
+	}
+
+	@Test
+	public void shouldDiffGraphs() {
+		Date date = new Date();
+		Order before = createOrder(date, "John Smith", 10);
+		Order after = createOrder(date, "Mary Jane", 11);
+		after.getItens().set(3, new Item(3, "Product X"));
+		ObjectGraphBuilder builder = new ObjectGraphBuilder().include("itens").include("customer");
+		List<GraphChange> changes = builder.build(before).diff(builder.build(after)).collect(Collectors.toList());
+		assertEquals(3, changes.size());
+		assertEquals(Arrays.asList("ADDED $root.itens[10]", "CHANGED $root.customer.name", "CHANGED $root.itens[3].productName"),
+				changes(changes.stream()));
+		for (GraphChange change : changes) {
+			if (change.getType() == GraphChange.Type.CHANGED && change.getPath().endsWith("name")) {
+				assertEquals("John Smith", change.getOldValue());
+				assertEquals("Mary Jane", change.getNewValue());
+			}
+		}
+		assertEquals(0, builder.build(before).diff(builder.build(before)).count());
+	}
+
+	@Test
+	public void shouldDiffCollectionsByKey() {
+		Date date = new Date();
+		Order before = createOrder(date, "John Smith", 10);
+		Order after = createOrder(date, "John Smith", 10);
+		after.getItens().remove(0);
+		after.addItem(new Item(10, "Product 10"));
+		ObjectGraphBuilder builder = new ObjectGraphBuilder().include("itens").include("customer");
+		ObjectGraph beforeGraph = builder.build(before);
+		ObjectGraph afterGraph = builder.build(after);
+		assertEquals(Arrays.asList("ADDED $root.itens[9]", "REMOVED $root.itens[0]"),
+				changes(new GraphDiff().matchBy("itens", "id").compare(beforeGraph, afterGraph)));
+		assertEquals(20, beforeGraph.diff(afterGraph).count());
+	}
+
+	@Test
+	public void shouldDiffCollectionsOfMapEntriesByKey() {
+		Date date = new Date();
+		Order after = createOrder(date, "John Smith", 10);
+		after.getItens().remove(0);
+		Map<String, Order> beforeOrders = Collections.singletonMap("EUR", createOrder(date, "John Smith", 10));
+		Map<String, Order> afterOrders = Collections.singletonMap("EUR", after);
+		ObjectGraphBuilder builder = new ObjectGraphBuilder().include("itens");
+		assertEquals(Arrays.asList("REMOVED $root['EUR'].itens[0]"),
+				changes(new GraphDiff().matchBy("['EUR'].itens", "id").compare(builder.build(beforeOrders), builder.build(afterOrders))));
+		assertEquals(Arrays.asList("REMOVED $root['EUR'].itens[0]"),
+				changes(new GraphDiff().matchBy("itens", "id").compare(builder.build(beforeOrders), builder.build(afterOrders))));
+	}
+
+	@Test
+	public void shouldDiffLargeGraphsOnDemand() {
+		Date date = new Date();
+		Order before = createOrder(date, "John Smith", 100000);
+		Order after = createOrder(date, "John Smith", 100000);
+		after.getItens().set(99999, new Item(99999, "Product X"));
+		ObjectGraphBuilder builder = new ObjectGraphBuilder().include("itens");
+		Iterator<GraphChange> changes = builder.build(before).diff(builder.build(after)).iterator();
+		assertTrue(changes.hasNext());
+		GraphChange change = changes.next();
+		assertEquals("$root.itens[99999].productName", change.getPath());
+		assertEquals("Product 99999", change.getOldValue());
+		assertFalse(changes.hasNext());
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotDiffGraphsOfDifferentContexts() {
+		Order order = new Order(129, new Date(), 1650d);
+		new ObjectGraphBuilder().build(order).diff(new ObjectGraphBuilder().build(order));
+	}
+
+	@Test
+	public void shouldFreezeGraphIntoSnapshot() {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 1000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder().include("itens").build(order);
+		GraphSnapshot snapshot = orderGraph.freeze();
+		assertEquals(countNodes(orderGraph.getRoot()), snapshot.size());
+		assertEquals(129, snapshot.get("id"));
+		assertEquals("Product 500", snapshot.get("itens[500].productName"));
+		assertEquals(orderGraph.get("$root.itens[999].id"), snapshot.get("$root.itens[999].id"));
+		int item = snapshot.getNode("itens[500]");
+		assertEquals("[500]", snapshot.getName(item));
+		assertEquals("$root.itens[500]", snapshot.getPath(item));
+		assertEquals(snapshot.getNode("itens"), snapshot.getParent(item));
+		assertEquals(snapshot.getNode("itens[501]"), snapshot.getNextSibling(item));
+		assertEquals(-1, snapshot.getNextSibling(snapshot.getNode("itens[999]")));
+		assertTrue(snapshot.isCollection(snapshot.getNode("itens")));
+		assertTrue(snapshot.isPrimitive(snapshot.getChild(item, "id")));
+		assertEquals(-1, snapshot.getNode("itens[1000]"));
+		assertEquals(-1, snapshot.getNode("customer"));
+		int children = 0;
+		for (int child = snapshot.getFirstChild(snapshot.getRoot()); child >= 0; child = snapshot.getNextSibling(child)) {
+			assertEquals(orderGraph.getNodes().get(children++).getName(), snapshot.getName(child));
+		}
+		assertEquals(orderGraph.getNodes().size(), children);
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotGetPropertyMissingInSnapshot() {
+		Order order = new Order(129, new Date(), 1650d);
+		new ObjectGraphBuilder().build(order).freeze().get("itens[0].productName");
+	}
+
+	@Test
+	public void shouldFreezeReferencesOfGraph() {
+		Team team = createTeam();
+		ObjectGraph teamGraph = new ObjectGraphBuilder()
+				.include("members.team.members")
+				.include("members.mentor")
+				.identityMode(IdentityMode.SHARE)
+				.build(team);
+		GraphSnapshot snapshot = teamGraph.freeze();
+		assertEquals(-1, snapshot.getReference(snapshot.getNode("members[0].team")));
+		assertEquals(snapshot.getNode("members[0].mentor"), snapshot.getReference(snapshot.getNode("members[1].mentor")));
+		assertEquals(-1, snapshot.getReference(snapshot.getNode("members[0].mentor")));
+		assertEquals("Kane", snapshot.get("members[1].mentor.name"));
+		assertEquals(snapshot.getNode("members[0].team"), snapshot.getReference(snapshot.getNode("members[1].team")));
+		assertEquals("John Smith", snapshot.get("members[1].team.members[0].name"));
+	}
+
+	@Test
+	public void shouldMapSnapshotWrittenToFile() throws Exception {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 1000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder().include("itens").build(order);
+		GraphSnapshot snapshot = orderGraph.freeze();
+		Path file = Files.createTempFile("order", ".graph");
+		try {
+			snapshot.writeTo(file);
+			MappedGraph mapped = MappedGraph.open(file);
+			assertEquals(snapshot.size(), mapped.size());
+			assertEquals(129, mapped.get("id"));
+			assertEquals(1650d, mapped.get("$root.amount"));
+			assertEquals(order.getDate(), mapped.get("date"));
+			assertEquals("Product 500", mapped.get("itens[500].productName"));
+			assertNull(mapped.get("itens"));
+			int item = mapped.getNode("itens[500]");
+			assertEquals(snapshot.getNode("itens[500]"), item);
+			assertEquals("$root.itens[500]", mapped.getPath(item));
+			assertEquals(mapped.getNode("itens[501]"), mapped.getNextSibling(item));
+			assertTrue(mapped.isCollection(mapped.getParent(item)));
+			assertEquals(-1, mapped.getNode("itens[1000]"));
+			for (int node = 0; node < snapshot.size(); node++) {
+				assertEquals(snapshot.getName(node), mapped.getName(node));
+				assertEquals(snapshot.getFirstChild(node), mapped.getFirstChild(node));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void shouldMapPrimitiveArraysWrittenToFile() throws Exception {
+		Telemetry telemetry = new Telemetry((short) 7, new int[] { 10, 20, 30, 40 }, new double[] { 1.5, 2.5 }, new boolean[] { false, true });
+		GraphSnapshot snapshot = new ObjectGraphBuilder().build(telemetry).freeze();
+		Path file = Files.createTempFile("telemetry", ".graph");
+		try {
+			snapshot.writeTo(file);
+			MappedGraph mapped = MappedGraph.open(file);
+			assertEquals(snapshot.get("scores[1]"), mapped.get("scores[1]"));
+			assertEquals(2.5, mapped.get("readings[1]"));
+			assertEquals(true, mapped.get("alarms[1]"));
+			assertEquals('X', mapped.get("code[1]"));
+			assertEquals((short) 7, mapped.get("sensor"));
+			assertArrayEquals(new int[] { 10, 20, 30, 40 }, (int[]) mapped.get("scores"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void shouldReplaceFileMappedByAnotherGraph() throws Exception {
+		Order order = new Order(129, new Date(), 1650d);
+		order.addItem(new Item(1, "MacBook pro 13"));
+		ObjectGraphBuilder builder = new ObjectGraphBuilder().include("itens");
+		Path file = Files.createTempFile("order", ".graph");
+		try {
+			builder.build(order).freeze().writeTo(file);
+			MappedGraph mapped = MappedGraph.open(file);
+			order.addItem(new Item(2, "iPad Air 2"));
+			builder.build(order).freeze().writeTo(file);
+			assertEquals("MacBook pro 13", mapped.get("itens[0].productName"));
+			assertEquals(-1, mapped.getNode("itens[1]"));
+			assertEquals("iPad Air 2", MappedGraph.open(file).get("itens[1].productName"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldNotMapTruncatedFile() throws Exception {
+		Order order = new Order(129, new Date(), 1650d);
+		order.addItem(new Item(1, "MacBook pro 13"));
+		Path file = Files.createTempFile("order", ".graph");
+		try {
+			new ObjectGraphBuilder().include("itens").build(order).freeze().writeTo(file);
+			byte[] bytes = Files.readAllBytes(file);
+			Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+			MappedGraph.open(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldNotMapInvalidFile() throws Exception {
+		Path file = Files.createTempFile("invalid", ".graph");
+		try {
+			Files.write(file, "not a graph file".getBytes("UTF-8"));
+			MappedGraph.open(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void shouldExpandSameObjectForEachPathByDefault() {
+		Team team = createTeam();
+		ObjectGraph teamGraph = new ObjectGraphBuilder()
+				.include("members.mentor")
+				.build(team);
+		assertFalse(teamGraph.getNode("members[1].mentor").isReference());
+		assertEquals("Kane", teamGraph.getNode("members[1].mentor.name").getValue());
+		assertEquals(teamGraph.getNode("members[0].mentor").getValue(), teamGraph.getNode("members[1].mentor").getValue());
+	}
+
+	@Test
+	public void shouldLimitDepthOfExpansion() {
+		Team team = createTeam();
+		ObjectGraph teamGraph = new ObjectGraphBuilder()
+				.include("members.mentor")
+				.maxDepth(2)
+				.build(team);
+		Node member = teamGraph.getNode("members[0]");
+		assertTrue(member.isTruncated());
+		assertTrue(member.getChildren().isEmpty());
+		assertFalse(teamGraph.getNode("members").isTruncated());
+		assertTrue(teamGraph.isTruncated());
+		assertEquals("Kane", teamGraph.get("members[0].mentor.name"));
+	}
+
+	@Test
+	public void shouldLimitCollectionItems() {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 1000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itens")
+				.include("itensAsStream")
+				.collectionAdapter(CollectionAdapters.STREAM)
+				.maxCollectionItems(10)
+				.build(order);
+		for (String collection : Arrays.asList("itens", "itensAsStream")) {
+			Node items = orderGraph.getNode(collection);
+			assertEquals(10, items.getChildren().size());
+			assertTrue(items.isTruncated());
+			assertNull(items.getChild(collection + "[500]"));
+			assertEquals("Product 500", orderGraph.get(collection + "[500].productName"));
+			assertEquals(1000, orderGraph.getCollectionLength(collection));
+		}
+		assertFalse(orderGraph.getRoot().isTruncated());
+	}
+
+	@Test
+	public void shouldNotTruncateCollectionWithinLimit() {
+		Order order = new Order(129, new Date(), 1650d);
+		order.addItem(new Item(1, "MacBook pro 13"));
+		order.addItem(new Item(2, "iPad Air 2"));
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itensAsStream")
+				.collectionAdapter(CollectionAdapters.STREAM)
+				.maxCollectionItems(2)
+				.build(order);
+		assertEquals(2, orderGraph.getNode("itensAsStream").getChildren().size());
+		assertFalse(orderGraph.getNode("itensAsStream").isTruncated());
+		assertFalse(orderGraph.isTruncated());
+	}
+
+	@Test
+	public void shouldLimitNumberOfNodes() {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 1000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itens")
+				.maxNodes(50)
+				.build(order);
+		//the root node is not counted
+		assertEquals(51, countNodes(orderGraph.getRoot()));
+		assertTrue(orderGraph.getNode("itens").isTruncated());
+		assertTrue(orderGraph.isTruncated());
+	}
+
+	@Test
+	public void shouldStopExpansionAfterTimeout() throws InterruptedException {
+		Team team = createTeam();
+		ObjectGraph teamGraph = new ObjectGraphBuilder()
+				.include("members")
+				.timeout(1)
+				.build(team);
+		Thread.sleep(10);
+		assertTrue(teamGraph.getNodes().isEmpty());
+		assertTrue(teamGraph.getRoot().isTruncated());
+		assertEquals("Platform", teamGraph.get("name"));
+	}
+
+	@Test
+	public void shouldShareGraphBetweenThreads() throws Exception {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 1000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itens")
+				.include("itensAsLinkedList")
+				.build(order);
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<Node>>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				results.add(executor.submit(() -> {
+					start.await();
+					List<Node> visited = new ArrayList<>();
+					for (String collection : Arrays.asList("itens", "itensAsLinkedList")) {
+						List<Node> items = orderGraph.getNode(collection).getChildren();
+						for (int i = 0; i < items.size(); i++) {
+							Node id = items.get(i).getChild("id");
+							assertEquals(i, id.getValue());
+							visited.add(id);
+						}
+					}
+					orderGraph.sortByName();
+					return visited;
+				}));
+			}
+			start.countDown();
+			List<Node> first = results.get(0).get();
+			assertEquals(2000, first.size());
+			for (Future<List<Node>> result : results) {
+				List<Node> visited = result.get();
+				for (int i = 0; i < first.size(); i++) {
+					assertSame(first.get(i), visited.get(i));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals("id", orderGraph.getNode("itens[0]").getChildren().get(0).getName());
+	}
+
+	@Test
+	public void shouldExpandAllNodesInParallel() {
+		Order order = new Order(129, new Date(), 1650d);
+		for (int i = 0; i < 10000; i++) {
+			order.addItem(new Item(i, "Product " + i));
+		}
+		ObjectGraph orderGraph = new ObjectGraphBuilder()
+				.include("itens")
+				.include("itensAsLinkedList")
+				.parallelExpansion(64)
+				.build(order);
+		for (String collection : Arrays.asList("itens", "itensAsLinkedList")) {
+			Node items = orderGraph.getNode(collection);
+			assertTrue(items.isExpanded());
+			assertEquals(10000, items.getChildren().size());
+			for (int i = 0; i < 10000; i++) {
+				Node item = items.getChildren().get(i);
+				assertTrue(item.isExpanded());
+				assertEquals("$root." + collection + "[" + i + "]", item.getPath().getPath());
+				assertEquals(i, item.getChild("id").getValue());
+			}
+		}
+		ObjectGraph sequentialGraph = new ObjectGraphBuilder()
+				.include("itens")
+				.include("itensAsLinkedList")
+				.build(order);
+		assertEquals(countNodes(sequentialGraph.getRoot()), countNodes(orderGraph.getRoot()));
+	}
+
+	@Test
+	public void shouldExpandSharedObjectsInParallelDeterministically() throws Exception {
+		Team team = new Team("Platform");
+		Member mentor = new Member("Kane", null, null);
+		for (int i = 0; i < 20000; i++) {
+			team.addMember("Member " + i, mentor);
+		}
+		ForkJoinPool pool = new ForkJoinPool(8);
+		try {
+			int expected = -1;
+			for (int run = 0; run < 20; run++) {
+				ObjectGraph teamGraph = new ObjectGraphBuilder()
+						.include("members.mentor")
+						.parallelExpansion(16, pool)
+						.build(team);
+				assertEquals("Kane", teamGraph.getNode("members[0].mentor.name").getValue());
+				assertEquals("Kane", teamGraph.getNode("members[10000].mentor.name").getValue());
+				int count = countNodes(teamGraph.getRoot());
+				assertTrue(expected < 0 || expected == count);
+				expected = count;
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldNotExpandInParallelWithIdentityMode() {
+		new ObjectGraphBuilder()
+				.include("members.mentor")
+				.identityMode(IdentityMode.REFERENCE)
+				.parallelExpansion(4)
+				.build(createTeam());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotExpandInParallelWithInvalidThreshold() {
+		new ObjectGraphBuilder().parallelExpansion(0);
+	}
+
+	@Test
+	public void shouldExpandChildrenInOrderOfName() {
+		Person john = new Person("John Smith", 30, new Person("Mary Jane", 28));
+		john.setAddress(new Address(new City("Gotham", "NY"), "1234"));
+		ObjectGraph johnGraph = new ObjectGraphBuilder()
+				.include("address.city")
+				.include("spouse")
+				.sortByName(true)
+				.build(john);
+		assertNodeNamesSorted(johnGraph.getRoot());
+		johnGraph.sortByName();
+		assertNodeNamesSorted(johnGraph.getRoot());
+		Product product = new Product("Notebook");
+		product.addPrice(new Price(1200d, "USD"));
+		product.addPrice(new Price(6000d, "BRL"));
+		ObjectGraph productGraph = new ObjectGraphBuilder()
+				.include("prices")
+				.sortByName(true)
+				.build(product);
+		assertEquals("['BRL']", productGraph.getNode("prices").getChildren().get(0).getName());
+	}
+
+	@Test
+	public void shouldSortNodesExpandedAfterSortByName() {
+		Person john = new Person("John Smith", 30, new Person("Mary Jane", 28));
+		john.setAddress(new Address(new City("Gotham", "NY"), "1234"));
+		ObjectGraph johnGraph = new ObjectGraphBuilder()
+				.include("address.city")
+				.include("spouse")
+				.build(john);
+		johnGraph.sortByName();
+		assertFalse(johnGraph.getRoot().isExpanded());
+		assertNodeNamesSorted(johnGraph.getRoot());
+	}
+
+	private void assertNodeNamesSorted(Node node) {
+		List<Node> children = node.getChildren();
+		for (int i = 1; i < children.size(); i++) {
+			assertTrue(children.get(i - 1).getName().compareTo(children.get(i).getName()) <= 0);
+		}
+		for (Node child : children) {
+			assertNodeNamesSorted(child);
+		}
+	}
+
 }
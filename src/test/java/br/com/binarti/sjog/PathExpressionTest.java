@@ -0,0 +1,154 @@
+package br.com.binarti.sjog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import br.com.binarti.sjog.model.Address;
+import br.com.binarti.sjog.model.City;
+import br.com.binarti.sjog.model.Document;
+import br.com.binarti.sjog.model.Item;
+import br.com.binarti.sjog.model.Order;
+import br.com.binarti.sjog.model.Person;
+import br.com.binarti.sjog.model.Price;
+import br.com.binarti.sjog.model.Product;
+import br.com.binarti.sjog.model.Telemetry;
+import br.com.binarti.sjog.model.events.TableEvent;
+import br.com.binarti.sjog.model.events.WordEvent;
+
+public class PathExpressionTest {
+
+	private Order createOrder(int id, String customerName) {
+		Order order = new Order(id, new Date(), 1650d);
+		Person customer = new Person(customerName, 30);
+		customer.setAddress(new Address(new City("Cariacica", "ES"), "29153040"));
+		order.setCustomer(customer);
+		order.addItem(new Item(1, "MacBook pro 13"));
+		order.addItem(new Item(2, "iPad Air 2"));
+		return order;
+	}
+
+	@Test
+	public void shouldEvaluateExpressionAgainstManyObjects() {
+		ObjectGraphBuilder builder = new ObjectGraphBuilder()
+				.include("customer")
+				.include("customer.address.city")
+				.include("itens");
+		PathExpression cityName = builder.compile("customer.address.city.name");
+		PathExpression productName = builder.compile("itens[1].productName");
+		for (int i = 0; i < 10; i++) {
+			Order order = createOrder(i, "Customer " + i);
+			assertEquals("Cariacica", cityName.get(order));
+			assertEquals("iPad Air 2", productName.get(order));
+			assertEquals(i, builder.compile("id").get(order));
+		}
+	}
+
+	@Test
+	public void shouldEvaluateExpressionCompiledFromObjectGraph() {
+		Order order = createOrder(129, "Kane");
+		ObjectGraph graph = new ObjectGraphBuilder()
+				.include("customer")
+				.include("itens")
+				.build(order);
+		PathExpression customerName = graph.compile("$root.customer.name");
+		assertEquals("Kane", customerName.get(graph.getObject()));
+		assertEquals(graph.get("customer.name"), customerName.get(graph.getObject()));
+		assertEquals("Other", customerName.get(createOrder(130, "Other")));
+	}
+
+	@Test
+	public void shouldEvaluateExpressionInRootCollection() {
+		PathExpression expression = new ObjectGraphBuilder().compile("$root[2].productName");
+		assertEquals("iPad Mini", expression.get(Arrays.asList(new Item(1, "MacBook pro 13"),
+				new Item(2, "iPad Air 2"),
+				new Item(3, "iPad Mini"))));
+	}
+
+	@Test
+	public void shouldBindAccessorsByRuntimeClass() {
+		Document doc = new Document("My document");
+		doc.addEvent(new WordEvent(1000));
+		doc.addEvent(new TableEvent(2));
+		ObjectGraphBuilder builder = new ObjectGraphBuilder()
+				.include("events")
+				.include("events.eventDetail");
+		PathExpression first = builder.compile("events[0].eventDetail.numberOfNewWords");
+		PathExpression second = builder.compile("events[1].eventDetail.numberOfNewCells");
+		assertEquals(new ObjectGraphBuilder().include("events").include("events.eventDetail").build(doc)
+				.get("events[0].eventDetail.numberOfNewWords"), first.get(doc));
+		assertEquals(new ObjectGraphBuilder().include("events").include("events.eventDetail").build(doc)
+				.get("events[1].eventDetail.numberOfNewCells"), second.get(doc));
+	}
+
+	@Test
+	public void shouldReturnNullForNullObjectsInPath() {
+		Order order = new Order(129, new Date(), 1650d);
+		order.setItens(null);
+		ObjectGraphBuilder builder = new ObjectGraphBuilder()
+				.include("customer")
+				.include("itens");
+		assertNull(builder.compile("customer.name").get(order));
+		assertNull(builder.compile("itens[0].productName").get(order));
+		assertNull(builder.compile("name").get(null));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void shouldNotAccessInvalidCollectionItem() {
+		Order order = new Order(129, new Date(), 1650d);
+		order.setItens(new ArrayList<>());
+		new ObjectGraphBuilder().include("itens").compile("itens[0].productName").get(order);
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotAccessPropertyNotIncluded() {
+		new ObjectGraphBuilder().compile("customer.name").get(createOrder(129, "Kane"));
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotAccessExcludedProperty() {
+		new ObjectGraphBuilder().include("itens").exclude("itens.id").compile("itens[0].id").get(createOrder(129, "Kane"));
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotAccessNonCollectionPropertyAsCollection() {
+		new ObjectGraphBuilder().include("customer").compile("customer[0].name").get(createOrder(129, "Kane"));
+	}
+
+	@Test
+	public void shouldEvaluateExpressionWithMapKey() {
+		Product product = new Product("MacBook pro 13");
+		product.addPrice(new Price(1650d, "USD"));
+		product.addPrice(new Price(1500d, "EUR"));
+		PathExpression expression = new ObjectGraphBuilder().include("prices").compile("prices['EUR'].amount");
+		assertEquals(1500d, expression.get(product));
+		assertEquals(new ObjectGraphBuilder().include("prices").build(product).get("prices['EUR'].amount"), expression.get(product));
+	}
+
+	@Test
+	public void shouldEvaluateTypedExpressions() {
+		Telemetry telemetry = new Telemetry((short) 7, new int[] { 10, 20, 30, 40 }, new double[] { 1.5, 2.5 }, new boolean[] { false, true });
+		ObjectGraphBuilder builder = new ObjectGraphBuilder();
+		assertEquals(40, builder.compile("scores[3]").get(telemetry));
+		assertEquals(40, builder.compile("scores[3]").getInt(telemetry));
+		assertEquals(40L, builder.compile("scores[3]").getLong(telemetry));
+		assertEquals(2.5, builder.compile("readings[1]").getDouble(telemetry), 0);
+		assertTrue(builder.compile("alarms[1]").getBoolean(telemetry));
+		assertEquals(7, builder.compile("sensor").getInt(telemetry));
+		assertEquals(4, builder.compile("samples").getInt(telemetry));
+		assertTrue(builder.compile("active").getBoolean(telemetry));
+	}
+
+	@Test(expected = ObjectGraphException.class)
+	public void shouldNotEvaluateTypedExpressionWithIncompatibleType() {
+		Telemetry telemetry = new Telemetry((short) 7, new int[] { 10 }, new double[] { 1.5 }, new boolean[] { false });
+		new ObjectGraphBuilder().compile("active").getInt(telemetry);
+	}
+
+}
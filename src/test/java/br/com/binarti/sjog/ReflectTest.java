@@ -3,10 +3,17 @@ package br.com.binarti.sjog;
 import static org.junit.Assert.*;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
+import br.com.binarti.sjog.model.Label;
+import br.com.binarti.sjog.model.Person;
 import br.com.binarti.sjog.model.PojoWithAllPrimitivesAndWrappers;
 
 public class ReflectTest {
@@ -41,4 +48,77 @@ public class ReflectTest {
 		assertTrue(containsGetter(getters, "calendar"));
 	}
 	
+	@Test
+	public void shouldReadPropertyUsingAccessor() throws Exception {
+		Person john = new Person("John Smith", 30);
+		PropertyAccessor nameAccessor = Reflect.of(Person.class).accessor("name");
+		PropertyAccessor ageAccessor = Reflect.of(Person.class).accessor("age");
+		assertEquals("John Smith", Reflect.invoke(nameAccessor, john, "name"));
+		assertEquals(30, Reflect.invoke(ageAccessor, john, "age"));
+		assertSame(nameAccessor, Reflect.of(Person.class).accessor("name"));
+		assertNull(Reflect.of(Person.class).accessor("unknown"));
+	}
+	
+	@Test(expected = ObjectGraphException.class)
+	public void shouldWrapExceptionThrownByAccessor() throws Exception {
+		PropertyAccessor nameAccessor = Reflect.of(Person.class).accessor("name");
+		Reflect.invoke(nameAccessor, new Object(), "name");
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void shouldNotAllowModifyCachedGetters() {
+		Reflect.of(Person.class).getters().clear();
+	}
+	
+	@Test
+	public void shouldShareClassMetadataBetweenThreads() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<List<Method>>> tasks = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				tasks.add(() -> Reflect.of(PojoWithAllPrimitivesAndWrappers.class).getters());
+			}
+			List<Method> first = null;
+			for (Future<List<Method>> future : executor.invokeAll(tasks)) {
+				List<Method> getters = future.get();
+				if (first == null) {
+					first = getters;
+				}
+				assertSame(first, getters);
+			}
+			assertEquals(20, first.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void shouldIgnoreStaticMethodsAndMethodsWithParameters() {
+		ClassMetadata metadata = ClassMetadata.of(Label.class);
+		assertEquals(1, metadata.properties().size());
+		assertNull(metadata.property("label"));
+		assertNull(metadata.property("static"));
+		assertEquals("n", new ObjectGraphBuilder().exclude("label").exclude("static").build(new Label("n")).get("name"));
+	}
+	
+	@Test
+	public void shouldFallBackToReflectionWhenGetterCanNotBeAdapted() throws Throwable {
+		PropertyAccessor accessor = new PropertyAccessor(Label.class.getMethod("getStatic"));
+		assertEquals("static", accessor.get(new Label("n")));
+		assertNull(accessor.typed(int.class));
+	}
+	
+	@Test
+	public void shouldFindPropertyByName() {
+		ClassMetadata metadata = ClassMetadata.of(PojoWithAllPrimitivesAndWrappers.class);
+		assertEquals(20, metadata.properties().size());
+		Property property = metadata.property("booleanPrimitive");
+		assertNotNull(property);
+		assertEquals("isBooleanPrimitive", property.getGetter().getName());
+		assertEquals(boolean.class, property.getType());
+		assertSame(property.getGetter(), Reflect.of(PojoWithAllPrimitivesAndWrappers.class).getter("booleanPrimitive"));
+		assertNull(metadata.property("class"));
+		assertNull(Reflect.of(PojoWithAllPrimitivesAndWrappers.class).getter("unknown"));
+	}
+	
 }
@@ -0,0 +1,26 @@
+package br.com.binarti.sjog.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class Bag implements Iterable<String> {
+
+	private String label;
+	private List<String> contents;
+
+	public Bag(String label, String... contents) {
+		this.label = label;
+		this.contents = Arrays.asList(contents);
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return contents.iterator();
+	}
+
+}
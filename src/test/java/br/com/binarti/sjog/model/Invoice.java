@@ -0,0 +1,28 @@
+package br.com.binarti.sjog.model;
+
+public class Invoice {
+
+	private int number;
+	private Person customer;
+
+	public Invoice(int number, Person customer) {
+		this.number = number;
+		this.customer = customer;
+	}
+
+	public int getNumber() {
+		return number;
+	}
+
+	public Person getCustomer() {
+		return customer;
+	}
+
+	/**
+	 * Simulate a lazy property that can not be loaded
+	 */
+	public String getNotes() {
+		throw new IllegalStateException("Notes not loaded");
+	}
+
+}
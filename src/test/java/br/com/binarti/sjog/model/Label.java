@@ -0,0 +1,25 @@
+package br.com.binarti.sjog.model;
+
+import java.util.Locale;
+
+public class Label {
+
+	private String name;
+
+	public Label(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getLabel(Locale locale) {
+		return name.toUpperCase(locale);
+	}
+
+	public static String getStatic() {
+		return "static";
+	}
+
+}
@@ -0,0 +1,31 @@
+package br.com.binarti.sjog.model;
+
+public class Member {
+
+	private String name;
+	private Team team;
+	private Member mentor;
+
+	public Member(String name, Team team, Member mentor) {
+		this.name = name;
+		this.team = team;
+		this.mentor = mentor;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Team getTeam() {
+		return team;
+	}
+
+	public Member getMentor() {
+		return mentor;
+	}
+
+	public void setMentor(Member mentor) {
+		this.mentor = mentor;
+	}
+
+}
@@ -1,10 +1,14 @@
 package br.com.binarti.sjog.model;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public class Order {
 
@@ -58,7 +62,19 @@ public class Order {
 	}
 	
 	public Set<Item> getItensAsSet() {
-		return new HashSet<>(itens);
+		return new LinkedHashSet<>(itens);
+	}
+
+	public LinkedList<Item> getItensAsLinkedList() {
+		return new LinkedList<>(itens);
+	}
+
+	public Deque<Item> getItensAsDeque() {
+		return new ArrayDeque<>(itens);
+	}
+
+	public Stream<Item> getItensAsStream() {
+		return itens.stream();
 	}
 
 }
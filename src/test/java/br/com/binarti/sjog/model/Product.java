@@ -0,0 +1,28 @@
+package br.com.binarti.sjog.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Product {
+
+	private String name;
+	private Map<String, Price> prices;
+
+	public Product(String name) {
+		this.name = name;
+		this.prices = new LinkedHashMap<>();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Map<String, Price> getPrices() {
+		return prices;
+	}
+
+	public void addPrice(Price price) {
+		prices.put(price.getCurrency(), price);
+	}
+
+}
@@ -0,0 +1,30 @@
+package br.com.binarti.sjog.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Team {
+
+	private String name;
+	private List<Member> members;
+
+	public Team(String name) {
+		this.name = name;
+		this.members = new ArrayList<>();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<Member> getMembers() {
+		return members;
+	}
+
+	public Member addMember(String name, Member mentor) {
+		Member member = new Member(name, this, mentor);
+		members.add(member);
+		return member;
+	}
+
+}
@@ -0,0 +1,51 @@
+package br.com.binarti.sjog.model;
+
+public class Telemetry {
+
+	private short sensor;
+	private Integer samples;
+	private boolean active;
+	private int[] scores;
+	private double[] readings;
+	private boolean[] alarms;
+	private char[] code;
+
+	public Telemetry(short sensor, int[] scores, double[] readings, boolean[] alarms) {
+		this.sensor = sensor;
+		this.samples = scores.length;
+		this.active = true;
+		this.scores = scores;
+		this.readings = readings;
+		this.alarms = alarms;
+		this.code = new char[] { 'T', 'X' };
+	}
+
+	public short getSensor() {
+		return sensor;
+	}
+
+	public Integer getSamples() {
+		return samples;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public int[] getScores() {
+		return scores;
+	}
+
+	public double[] getReadings() {
+		return readings;
+	}
+
+	public boolean[] getAlarms() {
+		return alarms;
+	}
+
+	public char[] getCode() {
+		return code;
+	}
+
+}